@@ -1,42 +1,67 @@
 package com.quizbattle.config;
 
-import com.quizbattle.model.entity.User;
-import com.quizbattle.model.entity.UserRole;
 import com.quizbattle.model.entity.RoomEntity;
+import com.quizbattle.model.entity.SeedState;
 import com.quizbattle.model.entity.Team;
-import com.quizbattle.repository.UserRepository;
-import com.quizbattle.repository.RoomRepository;
+import com.quizbattle.model.entity.User;
+import com.quizbattle.model.entity.UserRole;
 import com.quizbattle.repository.RoomInvitationRepository;
+import com.quizbattle.repository.RoomRepository;
+import com.quizbattle.repository.SeedStateRepository;
 import com.quizbattle.repository.TeamRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.quizbattle.repository.UserRepository;
+import com.quizbattle.service.RosterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
+/**
+ * Начальные данные: команды, пользователи по файлам аватаров, администратор и состав команд.
+ *
+ * Запускается после готовности приложения и не задерживает старт контекста.
+ * От набора начальных данных (файлы аватаров, имена, команды, составы) считается отпечаток;
+ * если он совпадает с сохраненным в seed_state, загрузка пропускается целиком.
+ * Иначе выполняется одна сверка в одной транзакции: пользователи читаются одним запросом,
+ * недостающие команды и пользователи сохраняются пачками, остальное - через dirty checking
+ */
 @Component
 public class DataLoader {
-    
-    @Autowired
-    private UserRepository userRepository;
-    
-    @Autowired
-    private RoomRepository roomRepository;
-    
-    @Autowired
-    private RoomInvitationRepository roomInvitationRepository;
-    
-    @Autowired
-    private TeamRepository teamRepository;
-    
+
+    private static final Logger log = LoggerFactory.getLogger(DataLoader.class);
+
+    private static final String SEED_NAME = "users";
+    private static final int SEED_VERSION = 2; // Увеличить при изменении логики сверки
+    private static final String ADMIN_USERNAME = "alex";
+    private static final String REMOVED_USERNAME = "master35";
+    private static final String DEFAULT_PASSWORD = "password123"; // Стандартный пароль для тестовых пользователей
+
     // Маппинг имен файлов на полные имена
     private static final Map<String, String> FULL_NAMES = new HashMap<>();
-    
+
+    // Команды и их участники (в порядке создания команд)
+    private static final Map<String, List<String>> TEAM_MEMBERS = new LinkedHashMap<>();
+
     static {
         FULL_NAMES.put("alex", "Александр Петров");
         FULL_NAMES.put("anna", "Анна Смирнова");
@@ -55,262 +80,209 @@ public class DataLoader {
         FULL_NAMES.put("sid", "Сидоров Игорь");
         FULL_NAMES.put("tor", "Тор Олегович");
         FULL_NAMES.put("vladimir", "Владимир Степанов");
+
+        TEAM_MEMBERS.put("Ведьмачий ковеант", List.of("kate", "leonid", "lena", "arina"));
+        TEAM_MEMBERS.put("Тифлинги", List.of("anna", "tor", "vladimir", "eugen"));
+        TEAM_MEMBERS.put("Орда Братва", List.of("di", "nata", "sid", "pavel"));
+        TEAM_MEMBERS.put("Лесной союз", List.of("shadow", "ivan", "nina", "marin"));
     }
-    
-    @PostConstruct
-    public void loadUsers() {
-        try {
-            // Удаляем пользователя master35, если он существует
-            removeMaster35User();
-            
-            // Создаем команды
-            createTeams();
-            
-            // Обновляем существующих пользователей - устанавливаем роль PLAYER если не установлена
-            updateExistingUsersRoles();
-            
-            // Устанавливаем alex как администратора
-            setAlexAsAdmin();
-            
-            // Используем PathMatchingResourcePatternResolver для работы с ресурсами в JAR
-            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-            Resource[] resources = resolver.getResources("classpath:avatars/*.png");
-            
-            if (resources.length == 0) {
-                System.out.println("Аватары не найдены в каталоге avatars");
-                return;
-            }
-            
-            for (Resource resource : resources) {
-                if (resource.exists()) {
-                    createUserFromResource(resource);
-                }
-            }
-            
-            // Связываем пользователей с командами
-            assignUsersToTeams();
-            
-            System.out.println("Данные пользователей успешно загружены из каталога avatars");
-        } catch (IOException e) {
-            System.err.println("Ошибка при загрузке пользователей: " + e.getMessage());
-            e.printStackTrace();
-        }
+
+    private final UserRepository userRepository;
+    private final RoomRepository roomRepository;
+    private final RoomInvitationRepository roomInvitationRepository;
+    private final TeamRepository teamRepository;
+    private final SeedStateRepository seedStateRepository;
+    private final RosterService rosterService;
+    private final TransactionTemplate transactionTemplate;
+
+    public DataLoader(UserRepository userRepository,
+                      RoomRepository roomRepository,
+                      RoomInvitationRepository roomInvitationRepository,
+                      TeamRepository teamRepository,
+                      SeedStateRepository seedStateRepository,
+                      RosterService rosterService,
+                      PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.roomRepository = roomRepository;
+        this.roomInvitationRepository = roomInvitationRepository;
+        this.teamRepository = teamRepository;
+        this.seedStateRepository = seedStateRepository;
+        this.rosterService = rosterService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
-    
-    private void removeMaster35User() {
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long start = System.currentTimeMillis();
         try {
-            String username = "master35";
-            var master35User = userRepository.findByUsername(username);
-            
-            if (master35User.isPresent()) {
-                User user = master35User.get();
-                
-                // Находим все комнаты, созданные master35
-                List<RoomEntity> rooms = roomRepository.findByHostUser(user);
-                
-                // Удаляем все приглашения для этих комнат
-                for (RoomEntity room : rooms) {
-                    roomInvitationRepository.deleteAll(roomInvitationRepository.findByRoom(room));
+            List<String> avatarFiles = findAvatarFiles();
+            String fingerprint = fingerprint(avatarFiles);
+
+            Boolean applied = transactionTemplate.execute(status -> {
+                Optional<SeedState> state = seedStateRepository.findById(SEED_NAME);
+                if (state.isPresent() && state.get().getFingerprint().equals(fingerprint)) {
+                    return false;
                 }
-                
-                // Удаляем все комнаты
-                roomRepository.deleteAll(rooms);
-                
-                // Теперь можно удалить пользователя
-                userRepository.delete(user);
-                System.out.println("Пользователь " + username + " и все связанные данные удалены");
+                reconcile(avatarFiles);
+                seedStateRepository.save(new SeedState(SEED_NAME, fingerprint));
+                return true;
+            });
+
+            if (Boolean.TRUE.equals(applied)) {
+                // Массовое обновление ролей идет мимо слушателя сущностей
+                rosterService.invalidate();
+                log.info("Seed data reconciled in {} ms ({} avatar users)", System.currentTimeMillis() - start, avatarFiles.size());
+            } else {
+                log.info("Seed data unchanged (fingerprint {}), skipped in {} ms", fingerprint, System.currentTimeMillis() - start);
             }
-        } catch (Exception e) {
-            System.err.println("Ошибка при удалении пользователя master35: " + e.getMessage());
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            log.error("Failed to load seed data: {}", e.getMessage(), e);
         }
     }
-    
-    private void updateExistingUsersRoles() {
-        try {
-            var allUsers = userRepository.findAll();
-            for (var user : allUsers) {
-                if (user.getRole() == null) {
-                    user.setRole(UserRole.PLAYER);
-                    userRepository.save(user);
-                    System.out.println("Обновлена роль для пользователя: " + user.getUsername());
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Ошибка при обновлении ролей: " + e.getMessage());
+
+    /**
+     * Привести БД в соответствие с набором начальных данных
+     */
+    private void reconcile(List<String> avatarFiles) {
+        // Пользователи без роли становятся игроками (до загрузки сущностей в контекст)
+        int rolesFixed = userRepository.assignDefaultRoles();
+
+        // Все затрагиваемые пользователи одним запросом
+        Set<String> usernames = new LinkedHashSet<>();
+        usernames.add(REMOVED_USERNAME);
+        usernames.add(ADMIN_USERNAME);
+        for (String fileName : avatarFiles) {
+            usernames.add(usernameOf(fileName));
         }
-    }
-    
-    private void setAlexAsAdmin() {
-        try {
-            String username = "alex";
-            
-            // Ищем пользователя alex
-            var alexUser = userRepository.findByUsername(username);
-            
-            if (alexUser.isPresent()) {
-                // Обновляем существующего пользователя
-                User user = alexUser.get();
-                user.setRole(UserRole.ADMIN);
-                userRepository.save(user);
-                System.out.println("Пользователь " + username + " установлен как администратор");
-            } else {
-                System.out.println("Пользователь " + username + " не найден, будет создан при загрузке аватаров");
+        TEAM_MEMBERS.values().forEach(usernames::addAll);
+
+        Map<String, User> users = new HashMap<>();
+        for (User user : userRepository.findByUsernameIn(usernames)) {
+            users.put(user.getUsername(), user);
+        }
+
+        User removedUser = users.remove(REMOVED_USERNAME);
+        if (removedUser != null) {
+            removeUser(removedUser);
+        }
+
+        // Команды: недостающие создаются одной пачкой
+        Map<String, Team> teams = new HashMap<>();
+        for (Team team : teamRepository.findAll()) {
+            teams.put(team.getName(), team);
+        }
+        List<Team> newTeams = new ArrayList<>();
+        for (String teamName : TEAM_MEMBERS.keySet()) {
+            if (!teams.containsKey(teamName)) {
+                Team team = new Team(teamName, null);
+                teams.put(teamName, team);
+                newTeams.add(team);
             }
-            
-        } catch (Exception e) {
-            System.err.println("Ошибка при установке администратора: " + e.getMessage());
-            e.printStackTrace();
         }
-    }
-    
-    private void createUserFromResource(Resource resource) {
-        try {
-            String fileName = resource.getFilename();
-            if (fileName == null || !fileName.toLowerCase().endsWith(".png")) {
-                return;
+        teamRepository.saveAll(newTeams);
+
+        Map<String, Team> teamByUsername = new HashMap<>();
+        TEAM_MEMBERS.forEach((teamName, members) ->
+                members.forEach(username -> teamByUsername.put(username, teams.get(teamName))));
+
+        // Пользователи по файлам аватаров: новые создаются сразу с ролью и командой
+        List<User> newUsers = new ArrayList<>();
+        for (String fileName : avatarFiles) {
+            String username = usernameOf(fileName);
+            if (users.containsKey(username)) {
+                continue;
             }
-            
-            String username = fileName.substring(0, fileName.lastIndexOf('.'));
-            
-            // Проверяем, существует ли уже пользователь с таким username
-            if (userRepository.existsByUsername(username)) {
-                System.out.println("Пользователь " + username + " уже существует, пропускаем");
-                return;
+            String fullName = FULL_NAMES.getOrDefault(username, capitalizeFirst(username) + " Пользователь");
+            UserRole role = ADMIN_USERNAME.equals(username) ? UserRole.ADMIN : UserRole.PLAYER;
+            User user = new User(username, DEFAULT_PASSWORD, fullName, username, "/avatars/" + fileName, role);
+            user.setTeam(teamByUsername.get(username));
+            users.put(username, user);
+            newUsers.add(user);
+        }
+        userRepository.saveAll(newUsers);
+
+        // Существующие пользователи: администратор и состав команд (изменения сбросятся пачкой при коммите)
+        User admin = users.get(ADMIN_USERNAME);
+        if (admin != null && admin.getRole() != UserRole.ADMIN) {
+            admin.setRole(UserRole.ADMIN);
+        }
+        int reassigned = 0;
+        for (Map.Entry<String, Team> entry : teamByUsername.entrySet()) {
+            User user = users.get(entry.getKey());
+            Team team = entry.getValue();
+            if (user != null && (user.getTeam() == null || !user.getTeam().getId().equals(team.getId()))) {
+                user.setTeam(team);
+                reassigned++;
             }
-            
-            // Получаем полное имя из маппинга или генерируем по умолчанию
-            String fullName = FULL_NAMES.getOrDefault(username, 
-                capitalizeFirst(username) + " Пользователь");
-            
-            // Формируем путь к аватару (относительный путь для использования в приложении)
-            String avatarPathStr = "/avatars/" + fileName;
-            
-            // Определяем роль: alex - ADMIN, остальные - PLAYER
-            UserRole role = "alex".equals(username) ? UserRole.ADMIN : UserRole.PLAYER;
-            
-            // Создаем пользователя
-            User user = new User(
-                username,
-                "password123", // Стандартный пароль для тестовых пользователей
-                fullName,
-                username, // nickname = username
-                avatarPathStr,
-                role
-            );
-            
-            userRepository.save(user);
-            String roleText = role == UserRole.ADMIN ? " (ADMIN)" : "";
-            System.out.println("Создан пользователь: " + username + " (" + fullName + ")" + roleText);
-            
-        } catch (Exception e) {
-            System.err.println("Ошибка при создании пользователя из ресурса " + resource.getFilename() + ": " + e.getMessage());
-            e.printStackTrace();
         }
+
+        log.info("Seed reconciliation: {} teams created, {} users created, {} team assignments changed, {} roles fixed{}",
+                newTeams.size(), newUsers.size(), reassigned, rolesFixed,
+                removedUser != null ? ", removed user " + REMOVED_USERNAME : "");
     }
-    
+
     /**
-     * Создать команды в базе данных
+     * Удалить пользователя вместе с его комнатами и приглашениями в них
      */
-    private void createTeams() {
-        try {
-            // Команда 1: Ведьмачий ковеант
-            createTeamIfNotExists("Ведьмачий ковеант", null);
-            
-            // Команда 2: Тифлинги
-            createTeamIfNotExists("Тифлинги", null);
-            
-            // Команда 3: Орда Братва
-            createTeamIfNotExists("Орда Братва", null);
-            
-            // Команда 4: Лесной союз
-            createTeamIfNotExists("Лесной союз", null);
-            
-            System.out.println("Команды успешно созданы/обновлены");
-        } catch (Exception e) {
-            System.err.println("Ошибка при создании команд: " + e.getMessage());
-            e.printStackTrace();
+    private void removeUser(User user) {
+        List<RoomEntity> rooms = roomRepository.findByHostUser(user);
+        for (RoomEntity room : rooms) {
+            roomInvitationRepository.deleteAll(roomInvitationRepository.findByRoom(room));
         }
+        roomRepository.deleteAll(rooms);
+        userRepository.delete(user);
     }
-    
+
     /**
-     * Создать команду, если она не существует
+     * Имена файлов аватаров в classpath:avatars (по алфавиту)
      */
-    private void createTeamIfNotExists(String teamName, String backgroundImage) {
-        var existingTeam = teamRepository.findByName(teamName);
-        if (existingTeam.isEmpty()) {
-            Team team = new Team(teamName, backgroundImage);
-            teamRepository.save(team);
-            System.out.println("Создана команда: " + teamName);
+    private List<String> findAvatarFiles() {
+        List<String> files = new ArrayList<>();
+        try {
+            // PathMatchingResourcePatternResolver работает и с ресурсами внутри JAR
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:avatars/*.png");
+            for (Resource resource : resources) {
+                String fileName = resource.getFilename();
+                if (resource.exists() && fileName != null && fileName.toLowerCase().endsWith(".png")) {
+                    files.add(fileName);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Avatars not found in classpath:avatars, seeding teams only: {}", e.getMessage());
         }
+        files.sort(null);
+        return files;
     }
-    
+
     /**
-     * Привязать пользователей к командам согласно распределению
+     * Отпечаток набора начальных данных (порядок записей фиксирован)
      */
-    private void assignUsersToTeams() {
+    private static String fingerprint(List<String> avatarFiles) {
+        StringBuilder seed = new StringBuilder();
+        seed.append("version=").append(SEED_VERSION).append('\n');
+        seed.append("admin=").append(ADMIN_USERNAME).append('\n');
+        seed.append("removed=").append(REMOVED_USERNAME).append('\n');
+        avatarFiles.forEach(file -> seed.append("avatar=").append(file).append('\n'));
+        new TreeMap<>(FULL_NAMES).forEach((username, fullName) ->
+                seed.append("name=").append(username).append('=').append(fullName).append('\n'));
+        TEAM_MEMBERS.forEach((teamName, members) ->
+                seed.append("team=").append(teamName).append('=').append(String.join(",", members)).append('\n'));
         try {
-            // Получаем команды
-            Team team1 = teamRepository.findByName("Ведьмачий ковеант")
-                    .orElseThrow(() -> new IllegalStateException("Команда 'Ведьмачий ковеант' не найдена"));
-            Team team2 = teamRepository.findByName("Тифлинги")
-                    .orElseThrow(() -> new IllegalStateException("Команда 'Тифлинги' не найдена"));
-            Team team3 = teamRepository.findByName("Орда Братва")
-                    .orElseThrow(() -> new IllegalStateException("Команда 'Орда Братва' не найдена"));
-            Team team4 = teamRepository.findByName("Лесной союз")
-                    .orElseThrow(() -> new IllegalStateException("Команда 'Лесной союз' не найдена"));
-            
-            // Команда 1: Ведьмачий ковеант - kate, leonid, lena, arina
-            assignUserToTeam("kate", team1);
-            assignUserToTeam("leonid", team1);
-            assignUserToTeam("lena", team1);
-            assignUserToTeam("arina", team1);
-            
-            // Команда 2: Тифлинги - anna, tor, vladimir, eugen
-            assignUserToTeam("anna", team2);
-            assignUserToTeam("tor", team2);
-            assignUserToTeam("vladimir", team2);
-            assignUserToTeam("eugen", team2);
-            
-            // Команда 3: Орда Братва - di, nata, sid, pavel
-            assignUserToTeam("di", team3);
-            assignUserToTeam("nata", team3);
-            assignUserToTeam("sid", team3);
-            assignUserToTeam("pavel", team3);
-            
-            // Команда 4: Лесной союз - shadow, ivan, nina, marin
-            assignUserToTeam("shadow", team4);
-            assignUserToTeam("ivan", team4);
-            assignUserToTeam("nina", team4);
-            assignUserToTeam("marin", team4);
-            
-            System.out.println("Пользователи успешно привязаны к командам");
-        } catch (Exception e) {
-            System.err.println("Ошибка при привязке пользователей к командам: " + e.getMessage());
-            e.printStackTrace();
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(seed.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
-    
-    /**
-     * Привязать пользователя к команде
-     */
-    private void assignUserToTeam(String username, Team team) {
-        var userOpt = userRepository.findByUsername(username);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setTeam(team);
-            userRepository.save(user);
-            System.out.println("Пользователь " + username + " привязан к команде " + team.getName());
-        } else {
-            System.out.println("Пользователь " + username + " не найден, пропускаем привязку к команде");
-        }
+
+    private static String usernameOf(String fileName) {
+        return fileName.substring(0, fileName.lastIndexOf('.'));
     }
-    
-    private String capitalizeFirst(String str) {
+
+    private static String capitalizeFirst(String str) {
         if (str == null || str.isEmpty()) {
             return str;
         }
         return str.substring(0, 1).toUpperCase() + str.substring(1);
     }
 }
-
@@ -0,0 +1,15 @@
+package com.quizbattle.config;
+
+/**
+ * Режим выполнения блокирующих обработчиков (quizbattle.execution.mode).
+ *
+ * PLATFORM - ограниченные пулы платформенных потоков (Tomcat и полоса blocking).
+ * VIRTUAL - HTTP-запросы (spring.threads.virtual.enabled, см. {@link ExecutionModeEnvironmentPostProcessor})
+ * и кадры полосы blocking выполняются в виртуальных потоках:
+ * ожидание медленной БД не занимает поток пула и не задерживает другие комнаты.
+ * Нажатия и управляющие кадры в обоих режимах остаются на платформенных потоках
+ */
+enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL
+}
@@ -0,0 +1,49 @@
+package com.quizbattle.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigDataEnvironmentPostProcessor;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * В режиме quizbattle.execution.mode=virtual включает spring.threads.virtual.enabled:
+ * Spring Boot сам переводит обработку HTTP-запросов Tomcat на виртуальные потоки.
+ * Явно заданный spring.threads.virtual.enabled имеет приоритет.
+ *
+ * Там же поднимается jdk.virtualThreadScheduler.parallelism - до создания первого виртуального потока.
+ * Виртуальные потоки не вытесняются: при одном-двух ядрах долгий обработчик занимает
+ * единственный поток-носитель, и чтение кадров нажатий ждет его. В режиме platform планировщик не трогается
+ */
+public class ExecutionModeEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+    private static final String MODE_PROPERTY = "quizbattle.execution.mode";
+
+    private static final String VIRTUAL_THREADS_PROPERTY = "spring.threads.virtual.enabled";
+    private static final String VIRTUAL_SCHEDULER_PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+    private static final int MIN_CARRIERS = 4;
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String mode = environment.getProperty(MODE_PROPERTY, ExecutionMode.PLATFORM.name());
+        if (ExecutionMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)) != ExecutionMode.VIRTUAL) {
+            return;
+        }
+        environment.getPropertySources().addLast(new MapPropertySource("quizbattleExecutionMode",
+                Map.of(VIRTUAL_THREADS_PROPERTY, "true")));
+        if (System.getProperty(VIRTUAL_SCHEDULER_PARALLELISM) == null) {
+            System.setProperty(VIRTUAL_SCHEDULER_PARALLELISM,
+                    String.valueOf(Math.max(MIN_CARRIERS, Runtime.getRuntime().availableProcessors())));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        // После загрузки application.properties
+        return ConfigDataEnvironmentPostProcessor.ORDER + 1;
+    }
+}
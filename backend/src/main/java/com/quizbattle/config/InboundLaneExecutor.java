@@ -0,0 +1,237 @@
+package com.quizbattle.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель clientInboundChannel с раздельными полосами обработки.
+ *
+ * Кадр относится к полосе по назначению: нажатия кнопки идут в полосу press, команды с работой
+ * в БД (создание комнаты, подключение игрока) - в blocking, остальные команды - в control.
+ * Полоса состоит из однопоточных очередей, очередь выбирается по сессии, поэтому внутри полосы
+ * порядок кадров одной сессии сохраняется, а всплеск управляющих команд не задерживает нажатия.
+ * Кадры одной сессии из разных полос могут выполниться не в порядке отправки.
+ *
+ * Кадры жизненного цикла сессии (CONNECT, SUBSCRIBE, UNSUBSCRIBE, DISCONNECT) идут в полосу
+ * blocking, в очередь своей сессии: DISCONNECT выполняется после еще не обработанного
+ * подключения игрока, а подписка на личную очередь - до ответа, который в нее придет.
+ *
+ * В режиме {@link ExecutionMode#VIRTUAL} полоса blocking не ограничена числом потоков: у каждой
+ * сессии своя очередь, которую разбирает виртуальный поток. Медленная БД задерживает только
+ * сессию, отправившую команду, а не все сессии, попавшие в ту же очередь
+ */
+class InboundLaneExecutor extends ThreadPoolTaskExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundLaneExecutor.class);
+
+    enum Lane { PRESS, CONTROL, BLOCKING }
+
+    // Выполняются в очереди сессии полосы blocking, по порядку с ее командами
+    private static final Set<SimpMessageType> LIFECYCLE = EnumSet.of(
+            SimpMessageType.CONNECT, SimpMessageType.SUBSCRIBE,
+            SimpMessageType.UNSUBSCRIBE, SimpMessageType.DISCONNECT);
+
+    private final Set<String> pressDestinations;
+    private final Set<String> blockingDestinations;
+    private final Map<Lane, LaneQueues> lanes = new EnumMap<>(Lane.class);
+
+    InboundLaneExecutor(Set<String> pressDestinations, Set<String> blockingDestinations,
+                        int pressThreads, int controlThreads, int blockingThreads, ExecutionMode blockingMode) {
+        this.pressDestinations = pressDestinations;
+        this.blockingDestinations = blockingDestinations;
+        lanes.put(Lane.PRESS, new Stripes(Lane.PRESS, pressThreads));
+        lanes.put(Lane.CONTROL, new Stripes(Lane.CONTROL, controlThreads));
+        lanes.put(Lane.BLOCKING, blockingMode == ExecutionMode.VIRTUAL
+                ? new VirtualSessionQueues(Lane.BLOCKING)
+                : new Stripes(Lane.BLOCKING, blockingThreads));
+        // Собственный пул базового класса не используется
+        setCorePoolSize(1);
+        setMaxPoolSize(1);
+        setThreadNamePrefix("clientInboundChannel-");
+    }
+
+    /**
+     * Метрики глубины очереди каждой полосы
+     */
+    void registerMetrics(MeterRegistry meterRegistry) {
+        lanes.forEach((lane, queues) -> Gauge.builder("quizbattle.inbound.queue.depth", queues, LaneQueues::queued)
+                .tag("lane", lane.name().toLowerCase(Locale.ROOT))
+                .description("Inbound STOMP frames waiting in the lane")
+                .register(meterRegistry));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Message<?> message = task instanceof MessageHandlingRunnable runnable ? runnable.getMessage() : null;
+        if (message == null) {
+            lanes.get(Lane.CONTROL).execute(null, task);
+            return;
+        }
+        lanes.get(laneOf(message)).execute(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), task);
+    }
+
+    Lane laneOf(Message<?> message) {
+        if (LIFECYCLE.contains(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))) {
+            return Lane.BLOCKING;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return Lane.CONTROL;
+        }
+        if (pressDestinations.contains(destination)) {
+            return Lane.PRESS;
+        }
+        return blockingDestinations.contains(destination) ? Lane.BLOCKING : Lane.CONTROL;
+    }
+
+    @Override
+    public void shutdown() {
+        lanes.values().forEach(LaneQueues::shutdown);
+        super.shutdown();
+    }
+
+    private static String threadPrefix(Lane lane) {
+        return "inbound-" + lane.name().toLowerCase(Locale.ROOT) + "-";
+    }
+
+    /**
+     * Очереди одной полосы; кадры одной сессии выполняются по порядку
+     */
+    private interface LaneQueues {
+
+        void execute(String sessionId, Runnable task);
+
+        int queued();
+
+        void shutdown();
+    }
+
+    /**
+     * Фиксированное число однопоточных очередей на платформенных потоках, очередь - по хэшу сессии
+     */
+    private static final class Stripes implements LaneQueues {
+        private final List<ThreadPoolExecutor> stripes = new ArrayList<>();
+
+        private Stripes(Lane lane, int threads) {
+            String prefix = threadPrefix(lane);
+            for (int i = 1; i <= Math.max(1, threads); i++) {
+                String name = prefix + i;
+                stripes.add(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            }
+        }
+
+        @Override
+        public void execute(String sessionId, Runnable task) {
+            int stripe = sessionId != null ? Math.floorMod(sessionId.hashCode(), stripes.size()) : 0;
+            stripes.get(stripe).execute(task);
+        }
+
+        @Override
+        public int queued() {
+            int queued = 0;
+            for (ThreadPoolExecutor stripe : stripes) {
+                queued += stripe.getQueue().size();
+            }
+            return queued;
+        }
+
+        @Override
+        public void shutdown() {
+            stripes.forEach(ThreadPoolExecutor::shutdown);
+        }
+    }
+
+    /**
+     * Очередь на каждую сессию, которую разбирает виртуальный поток. Поток запускается
+     * с первым кадром и завершается, когда очередь сессии опустела
+     */
+    private static final class VirtualSessionQueues implements LaneQueues {
+        private final ThreadFactory threadFactory;
+        // Очереди изменяются только внутри compute: добавление кадра и удаление пустой очереди атомарны
+        private final Map<String, ArrayDeque<Runnable>> sessions = new ConcurrentHashMap<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private volatile boolean shutdown;
+
+        private VirtualSessionQueues(Lane lane) {
+            this.threadFactory = Thread.ofVirtual().name(threadPrefix(lane) + "v", 1).factory();
+        }
+
+        @Override
+        public void execute(String sessionId, Runnable task) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Inbound lane is shut down");
+            }
+            String key = sessionId != null ? sessionId : "";
+            boolean[] started = new boolean[1];
+            queued.incrementAndGet();
+            sessions.compute(key, (k, tasks) -> {
+                if (tasks == null) {
+                    tasks = new ArrayDeque<>();
+                    started[0] = true;
+                }
+                tasks.add(task);
+                return tasks;
+            });
+            if (started[0]) {
+                threadFactory.newThread(() -> drain(key)).start();
+            }
+        }
+
+        private void drain(String key) {
+            Runnable[] next = new Runnable[1];
+            while (!shutdown) {
+                next[0] = null;
+                sessions.computeIfPresent(key, (k, tasks) -> {
+                    next[0] = tasks.poll();
+                    return next[0] != null ? tasks : null;
+                });
+                if (next[0] == null) {
+                    return;
+                }
+                queued.decrementAndGet();
+                try {
+                    next[0].run();
+                } catch (RuntimeException e) {
+                    log.error("Inbound frame handling failed for session {}", key, e);
+                }
+            }
+        }
+
+        @Override
+        public int queued() {
+            return queued.get();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+    }
+}
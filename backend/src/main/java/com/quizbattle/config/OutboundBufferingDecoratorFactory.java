@@ -0,0 +1,462 @@
+package com.quizbattle.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Буферизация исходящих WebSocket-сообщений с учетом их смысла (защита от медленных клиентов).
+ *
+ * Сообщения сессии ставятся в ее очередь и пишутся в пуле потоков ws-outbound, поэтому потоки
+ * clientOutboundChannel не ждут медленный телефон. Пока сообщение в очереди, его может заменить
+ * более новое того же смысла для той же подписки:
+ * ROOM_STATE заменяет ROOM_STATE, PLAYER_JOINED и PLAYER_LEFT (полный список игроков),
+ * PLAYER_JOINED/PLAYER_LEFT заменяют друг друга, CHAPTER_UPDATED и CHAPTER_PREFETCH - только себя.
+ * События раунда (ROUND_*, BUTTON_PRESSED), ошибки и служебные кадры STOMP не заменяются.
+ * Если после замены очередь больше buffer-size-limit, сначала выбрасываются подсказки
+ * CHAPTER_PREFETCH, а затем сессия закрывается (клиент переподключится и получит ROOM_STATE);
+ * так же закрывается сессия, запись в которую идет дольше send-time-limit
+ */
+@Component
+class OutboundBufferingDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundBufferingDecoratorFactory.class);
+
+    private static final int FRAMES_PER_DRAIN = 16; // Затем очередь сессии уступает поток другим
+    private static final int HEADER_SCAN_LIMIT = 1024;
+    private static final String NO_ROOM = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final long bufferSizeLimit;
+    private final Duration sendTimeLimit;
+
+    private final Map<String, BufferedSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, RoomMeters> roomMeters = new ConcurrentHashMap<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-outbound-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter closedBufferLimit;
+    private final Counter closedTimeLimit;
+
+    OutboundBufferingDecoratorFactory(MeterRegistry meterRegistry,
+                                      @Value("${quizbattle.ws.outbound.buffer-size-limit:512KB}") DataSize bufferSizeLimit,
+                                      @Value("${quizbattle.ws.outbound.send-time-limit:PT10S}") Duration sendTimeLimit,
+                                      @Value("${quizbattle.ws.outbound.writer-threads:8}") int writerThreads) {
+        this.meterRegistry = meterRegistry;
+        this.bufferSizeLimit = bufferSizeLimit.toBytes();
+        this.sendTimeLimit = sendTimeLimit;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), r -> {
+            Thread thread = new Thread(r, "ws-outbound-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("quizbattle.ws.outbound.queued.bytes", queuedBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .description("Outbound WebSocket frames waiting to be written")
+                .register(meterRegistry);
+        this.closedBufferLimit = closedCounter("buffer-size");
+        this.closedTimeLimit = closedCounter("send-time");
+    }
+
+    private Counter closedCounter(String reason) {
+        return Counter.builder("quizbattle.ws.outbound.closed")
+                .tag("reason", reason)
+                .description("WebSocket sessions closed as too slow")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // Зависшая запись держит поток ws-outbound: закрытие сессии ее прерывает
+        watchdog.scheduleWithFixedDelay(() -> {
+            long stalledBefore = System.currentTimeMillis() - sendTimeLimit.toMillis();
+            sessions.values().forEach(session -> session.closeIfStalled(stalledBefore));
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BufferedSession buffered = new BufferedSession(session);
+                sessions.put(session.getId(), buffered);
+                super.afterConnectionEstablished(buffered);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(buffered(session), message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(buffered(session), exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                BufferedSession buffered = sessions.remove(session.getId());
+                try {
+                    super.afterConnectionClosed(buffered != null ? buffered : session, closeStatus);
+                } finally {
+                    if (buffered != null) {
+                        buffered.release();
+                    }
+                }
+            }
+        };
+    }
+
+    private WebSocketSession buffered(WebSocketSession session) {
+        BufferedSession buffered = sessions.get(session.getId());
+        return buffered != null ? buffered : session;
+    }
+
+    private RoomMeters acquireRoomMeters(String room) {
+        return roomMeters.compute(room, (key, existing) -> {
+            RoomMeters meters = existing != null ? existing : new RoomMeters(key);
+            meters.sessions++;
+            return meters;
+        });
+    }
+
+    private void releaseRoomMeters(String room) {
+        roomMeters.computeIfPresent(room, (key, meters) -> {
+            if (--meters.sessions > 0) {
+                return meters;
+            }
+            meterRegistry.remove(meters.coalesced);
+            meterRegistry.remove(meters.dropped);
+            return null;
+        });
+    }
+
+    /**
+     * Счетчики комнаты; удаляются, когда закрывается последняя сессия, получавшая сообщения комнаты
+     */
+    private final class RoomMeters {
+        private final Counter coalesced;
+        private final Counter dropped;
+        private int sessions; // Изменяется под блокировкой ключа roomMeters
+
+        private RoomMeters(String room) {
+            this.coalesced = Counter.builder("quizbattle.ws.outbound.coalesced")
+                    .tag("room", room)
+                    .description("Queued outbound frames replaced by a newer frame with the same meaning")
+                    .register(meterRegistry);
+            this.dropped = Counter.builder("quizbattle.ws.outbound.dropped")
+                    .tag("room", room)
+                    .description("Queued outbound frames dropped for slow clients")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Сессия с собственной очередью исходящих кадров
+     */
+    private final class BufferedSession extends WebSocketSessionDecorator {
+
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private final Map<String, RoomMeters> rooms = new ConcurrentHashMap<>();
+        private long bytes;
+        private boolean scheduled;
+        private boolean closed;
+        private long writingSince; // Начало текущей записи (0 - запись не идет)
+        private boolean released; // Счетчики комнат отпущены (под блокировкой rooms)
+
+        private BufferedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            Frame frame = Frame.of(message);
+            RoomMeters meters = meters(frame.room);
+            if (meters == null) {
+                return; // Сессия уже закрыта
+            }
+            String overflow = null;
+            synchronized (this) {
+                if (closed) {
+                    meters.dropped.increment();
+                    return;
+                }
+                if (frame.supersedes != null) {
+                    coalesce(frame, meters);
+                }
+                queue.add(frame);
+                add(frame.size);
+                if (bytes > bufferSizeLimit) {
+                    dropPrefetchHints();
+                    if (bytes > bufferSizeLimit) {
+                        overflow = "buffer size " + bytes + " bytes";
+                    }
+                }
+                if (overflow == null) {
+                    schedule();
+                }
+            }
+            if (overflow != null) {
+                closedBufferLimit.increment();
+                closeSlow(overflow);
+            }
+        }
+
+        /**
+         * Счетчики комнаты для этой сессии; null после закрытия сессии (счетчики уже отпущены)
+         */
+        private RoomMeters meters(String room) {
+            RoomMeters meters = rooms.get(room);
+            if (meters == null) {
+                synchronized (rooms) {
+                    if (released) {
+                        return null;
+                    }
+                    meters = rooms.computeIfAbsent(room, OutboundBufferingDecoratorFactory.this::acquireRoomMeters);
+                }
+            }
+            return meters;
+        }
+
+        /**
+         * Убрать из очереди кадры, которые новый кадр делает устаревшими
+         */
+        private void coalesce(Frame frame, RoomMeters meters) {
+            for (Iterator<Frame> it = queue.iterator(); it.hasNext(); ) {
+                Frame queued = it.next();
+                if (frame.destination.equals(queued.destination) && frame.supersedes.contains(queued.type)) {
+                    it.remove();
+                    add(-queued.size);
+                    meters.coalesced.increment();
+                }
+            }
+        }
+
+        private void dropPrefetchHints() {
+            for (Iterator<Frame> it = queue.iterator(); it.hasNext() && bytes > bufferSizeLimit; ) {
+                Frame queued = it.next();
+                if (Frame.CHAPTER_PREFETCH.equals(queued.type)) {
+                    it.remove();
+                    add(-queued.size);
+                    countDropped(queued.room);
+                }
+            }
+        }
+
+        private void countDropped(String room) {
+            RoomMeters meters = meters(room);
+            if (meters != null) {
+                meters.dropped.increment();
+            }
+        }
+
+        private void add(long delta) {
+            bytes += delta;
+            queuedBytes.addAndGet(delta);
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < FRAMES_PER_DRAIN; i++) {
+                Frame frame;
+                synchronized (this) {
+                    frame = closed ? null : queue.poll();
+                    if (frame == null) {
+                        scheduled = false;
+                        return;
+                    }
+                    add(-frame.size);
+                    writingSince = System.currentTimeMillis();
+                }
+                try {
+                    getDelegate().sendMessage(frame.message);
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Failed to send to WebSocket session {}: {}", getId(), e.getMessage());
+                    discard();
+                    return;
+                } finally {
+                    synchronized (this) {
+                        writingSince = 0;
+                    }
+                }
+            }
+            synchronized (this) {
+                scheduled = false;
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        private void closeIfStalled(long stalledBefore) {
+            long since;
+            synchronized (this) {
+                since = writingSince;
+            }
+            if (since != 0 && since < stalledBefore) {
+                closedTimeLimit.increment();
+                closeSlow("send time " + (System.currentTimeMillis() - since) + " ms");
+            }
+        }
+
+        private void closeSlow(String reason) {
+            int dropped = discard();
+            if (dropped < 0) {
+                return; // Уже закрыта
+            }
+            log.info("Closing slow WebSocket session {}: {} over limit, {} queued frames dropped", getId(), reason, dropped);
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Failed to close WebSocket session {}: {}", getId(), e.getMessage());
+            }
+        }
+
+        /**
+         * Пометить сессию закрытой и выбросить очередь
+         *
+         * @return число выброшенных кадров, -1 если сессия уже была закрыта
+         */
+        private int discard() {
+            synchronized (this) {
+                if (closed) {
+                    return -1;
+                }
+                closed = true;
+                int dropped = queue.size();
+                for (Frame frame : queue) {
+                    countDropped(frame.room);
+                }
+                queue.clear();
+                add(-bytes);
+                return dropped;
+            }
+        }
+
+        private void release() {
+            discard();
+            synchronized (rooms) {
+                released = true;
+                rooms.keySet().forEach(OutboundBufferingDecoratorFactory.this::releaseRoomMeters);
+                rooms.clear();
+            }
+        }
+    }
+
+    /**
+     * Исходящий кадр с разобранными назначением, типом сообщения и кодом комнаты
+     */
+    private static final class Frame {
+        private static final String CHAPTER_PREFETCH = "CHAPTER_PREFETCH";
+        private static final Map<String, Set<String>> SUPERSEDES = Map.of(
+                "ROOM_STATE", Set.of("ROOM_STATE", "PLAYER_JOINED", "PLAYER_LEFT"),
+                "PLAYER_JOINED", Set.of("PLAYER_JOINED", "PLAYER_LEFT"),
+                "PLAYER_LEFT", Set.of("PLAYER_JOINED", "PLAYER_LEFT"),
+                "CHAPTER_UPDATED", Set.of("CHAPTER_UPDATED"),
+                CHAPTER_PREFETCH, Set.of(CHAPTER_PREFETCH));
+
+        private final WebSocketMessage<?> message;
+        private final int size;
+        private final String destination;
+        private final String type;
+        private final String room;
+        private final Set<String> supersedes; // null - кадр ничего не заменяет
+
+        private Frame(WebSocketMessage<?> message, String destination, String type, String room) {
+            this.message = message;
+            this.size = message.getPayloadLength();
+            this.destination = destination;
+            this.type = type;
+            this.room = room;
+            this.supersedes = destination != null && type != null ? SUPERSEDES.get(type) : null;
+        }
+
+        /**
+         * Разбор кадра STOMP MESSAGE: заголовок destination и поля type и roomCode JSON-тела
+         */
+        private static Frame of(WebSocketMessage<?> message) {
+            if (!(message instanceof TextMessage text) || !text.getPayload().startsWith("MESSAGE\n")) {
+                return new Frame(message, null, null, NO_ROOM);
+            }
+            String payload = text.getPayload();
+            int headersEnd = payload.indexOf("\n\n");
+            if (headersEnd < 0 || headersEnd > HEADER_SCAN_LIMIT) {
+                return new Frame(message, null, null, NO_ROOM);
+            }
+            String destination = header(payload, headersEnd, "\ndestination:");
+            String type = field(payload, headersEnd, "\"type\":\"");
+            String room = field(payload, headersEnd, "\"roomCode\":\"");
+            return new Frame(message, destination, type, room != null ? room : NO_ROOM);
+        }
+
+        private static String header(String payload, int headersEnd, String name) {
+            int start = payload.indexOf(name);
+            if (start < 0 || start > headersEnd) {
+                return null;
+            }
+            start += name.length();
+            int end = payload.indexOf('\n', start);
+            return end > start ? payload.substring(start, end) : null;
+        }
+
+        private static String field(String payload, int bodyStart, String prefix) {
+            int start = payload.indexOf(prefix, bodyStart);
+            if (start < 0 || start > bodyStart + HEADER_SCAN_LIMIT) {
+                return null;
+            }
+            start += prefix.length();
+            int end = payload.indexOf('"', start);
+            return end > start ? payload.substring(start, end) : null;
+        }
+    }
+}
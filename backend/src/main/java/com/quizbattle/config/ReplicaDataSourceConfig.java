@@ -0,0 +1,88 @@
+package com.quizbattle.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Источники данных с репликой для чтения.
+ * Включается только при заданном quizbattle.datasource.replica.url, иначе
+ * Spring Boot создает обычный пул к основной БД, как раньше
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "quizbattle.datasource.replica", name = "url")
+public class ReplicaDataSourceConfig {
+
+    /**
+     * Пул основной БД (настройки spring.datasource.*)
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Пул реплики (логин и пароль по умолчанию - как у основной БД)
+     */
+    @Bean
+    @ConfigurationProperties("quizbattle.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${quizbattle.datasource.replica.url}") String url,
+                                              @Value("${quizbattle.datasource.replica.username:}") String username,
+                                              @Value("${quizbattle.datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+        dataSource.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            HikariDataSource replicaDataSource,
+            @Value("${quizbattle.datasource.replica.read-your-writes-window:PT2S}") Duration readYourWritesWindow,
+            MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(readYourWritesWindow);
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.Route.PRIMARY, primaryDataSource,
+                ReplicaRoutingDataSource.Route.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+
+        FunctionCounter.builder("quizbattle.datasource.routes", routing, ReplicaRoutingDataSource::getPrimaryRoutes)
+                .tag("target", "primary")
+                .register(meterRegistry);
+        FunctionCounter.builder("quizbattle.datasource.routes", routing, ReplicaRoutingDataSource::getReplicaRoutes)
+                .tag("target", "replica")
+                .register(meterRegistry);
+        return routing;
+    }
+
+    /**
+     * Источник данных приложения: соединение берется лениво, при первом запросе,
+     * когда признак read-only транзакции уже известен
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,79 @@
+package com.quizbattle.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Маршрутизация соединений между основной БД и репликой.
+ * Read-only транзакции идут на реплику, все остальное - на основную БД.
+ *
+ * Защита от устаревших чтений: после коммита любой пишущей транзакции (@Transactional
+ * или TransactionTemplate, с именем или без, в том числе фоновой записи истории раундов)
+ * в течение окна read-your-writes все чтения тоже идут на основную БД, чтобы, например, только что
+ * созданная комната или приглашение были сразу видны игрокам, пока реплика догоняет.
+ * Запись вне транзакции (JdbcTemplate в режиме autocommit) окно не открывает.
+ *
+ * Окно общее для всего приложения, а не для отдельного клиента: коммит любого запроса
+ * или фоновой задачи переводит на основную БД чтения всех клиентов, поэтому при частых
+ * записях чтения в основном остаются на основной БД
+ *
+ * Решение принимается при получении соединения, поэтому источник должен быть обернут
+ * в LazyConnectionDataSourceProxy: JpaTransactionManager запрашивает соединение раньше,
+ * чем помечает транзакцию как read-only
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    private final long readYourWritesWindowMs;
+    private final AtomicLong lastWriteCommitAt = new AtomicLong();
+    private final AtomicLong replicaRoutes = new AtomicLong();
+    private final AtomicLong primaryRoutes = new AtomicLong();
+
+    public ReplicaRoutingDataSource(Duration readYourWritesWindow) {
+        this.readYourWritesWindowMs = readYourWritesWindow.toMillis();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            primaryRoutes.incrementAndGet();
+            return Route.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            trackWriteCommit();
+            primaryRoutes.incrementAndGet();
+            return Route.PRIMARY;
+        }
+        if (System.currentTimeMillis() - lastWriteCommitAt.get() < readYourWritesWindowMs) {
+            primaryRoutes.incrementAndGet();
+            return Route.PRIMARY;
+        }
+        replicaRoutes.incrementAndGet();
+        return Route.REPLICA;
+    }
+
+    public long getReplicaRoutes() {
+        return replicaRoutes.get();
+    }
+
+    public long getPrimaryRoutes() {
+        return primaryRoutes.get();
+    }
+
+    private void trackWriteCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWriteCommitAt.accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package com.quizbattle.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Выравнивание последовательностей id после перехода с IDENTITY на пулы последовательностей.
+ * Hibernate создает последовательности с начала, а в таблицах уже есть строки со старыми id,
+ * поэтому последовательность сдвигается не ниже текущего максимума id
+ */
+@Component
+@DependsOn("entityManagerFactory") // последовательности создаются при обновлении схемы Hibernate
+public class SequenceInitializer {
+    
+    private static final Logger log = LoggerFactory.getLogger(SequenceInitializer.class);
+    
+    // Таблица -> последовательность
+    private static final String[][] SEQUENCES = {
+        {"users", "users_seq"},
+        {"teams", "teams_seq"},
+        {"rooms", "rooms_seq"},
+        {"room_invitations", "room_invitations_seq"}
+    };
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public SequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @PostConstruct
+    public void alignSequences() {
+        for (String[] entry : SEQUENCES) {
+            String table = entry[0];
+            String sequence = entry[1];
+            try {
+                jdbcTemplate.queryForObject(
+                    "SELECT setval('" + sequence + "', GREATEST(" +
+                    "(SELECT COALESCE(MAX(id), 1) FROM " + table + "), " +
+                    "(SELECT last_value FROM " + sequence + ")))",
+                    Long.class);
+            } catch (DataAccessException e) {
+                log.warn("Failed to align sequence {} with table {}: {}", sequence, table, e.getMessage());
+            }
+        }
+    }
+}
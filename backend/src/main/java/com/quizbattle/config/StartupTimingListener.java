@@ -0,0 +1,55 @@
+package com.quizbattle.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Замер времени старта: от запуска JVM до готовности приложения и до первого
+ * принятого STOMP-подключения (по нему сравниваются варианты упаковки, см. профиль fast-startup)
+ */
+@Component
+public class StartupTimingListener {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimingListener.class);
+
+    private final AtomicLong readyMs = new AtomicLong(-1);
+    private final AtomicLong firstStompConnectMs = new AtomicLong(-1);
+
+    public StartupTimingListener(MeterRegistry meterRegistry) {
+        Gauge.builder("quizbattle.startup.ready", readyMs, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("JVM start to application ready")
+                .register(meterRegistry);
+        Gauge.builder("quizbattle.startup.first.stomp.connect", firstStompConnectMs, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("JVM start to first accepted STOMP connection")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        readyMs.set(uptime);
+        log.info("Application ready {} ms after JVM start", uptime);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        if (firstStompConnectMs.get() >= 0) {
+            return;
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (firstStompConnectMs.compareAndSet(-1, uptime)) {
+            log.info("First STOMP connection accepted {} ms after JVM start", uptime);
+        }
+    }
+}
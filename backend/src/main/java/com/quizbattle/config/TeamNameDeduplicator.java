@@ -0,0 +1,59 @@
+package com.quizbattle.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Схлопывание команд с одинаковым именем до обновления схемы Hibernate.
+ * Имя команды - natural id с уникальным ограничением (на нем держится ON CONFLICT (name)
+ * в импорте), а в старых базах дубли могли появиться до этого ограничения.
+ * Пользователи переводятся на команду с наименьшим id, остальные дубли удаляются
+ */
+@Configuration(proxyBeanMethods = false)
+class TeamNameDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(TeamNameDeduplicator.class);
+
+    private static final String MOVE_USERS_SQL =
+            "UPDATE users u SET team_id = d.keep_id FROM (" +
+            "  SELECT id, MIN(id) OVER (PARTITION BY name) AS keep_id FROM teams) d " +
+            "WHERE u.team_id = d.id AND d.id <> d.keep_id";
+
+    private static final String DELETE_DUPLICATES_SQL =
+            "DELETE FROM teams t USING teams k WHERE t.name = k.name AND t.id > k.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    TeamNameDeduplicator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Фабрика EntityManager (и обновление схемы) создается после этого бина
+    @Bean
+    static EntityManagerFactoryDependsOnPostProcessor teamNamesDeduplicatedBeforeSchemaUpdate() {
+        return new EntityManagerFactoryDependsOnPostProcessor(TeamNameDeduplicator.class);
+    }
+
+    @PostConstruct
+    public void deduplicate() {
+        try {
+            if (jdbcTemplate.queryForObject("SELECT to_regclass('teams') IS NOT NULL", Boolean.class) != Boolean.TRUE) {
+                return; // новая база, схему создаст Hibernate
+            }
+            int users = jdbcTemplate.update(MOVE_USERS_SQL);
+            int teams = jdbcTemplate.update(DELETE_DUPLICATES_SQL);
+            if (teams > 0) {
+                log.info("Merged {} duplicate teams by name, reassigned {} users", teams, users);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to deduplicate team names: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.quizbattle.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.controller.GameController;
+import com.quizbattle.model.GameMessage;
+import com.quizbattle.model.GameState;
+import com.quizbattle.model.Player;
+import com.quizbattle.model.Room;
+import com.quizbattle.service.GameService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedObject;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Прогрев JIT перед тем, как инстанс начнет принимать трафик (quizbattle.warmup.enabled).
+ *
+ * Открывает служебные комнаты WARMnnn (реальные коды из 4 символов с ними не пересекаются)
+ * и гоняет в них раунды через тот же входящий канал STOMP, что и клиенты:
+ * start-round, нажатия всех игроков, ожидание победителя, reset-round. Рассылки уходят
+ * в /topic/room/WARMnnn без подписчиков. Служебные комнаты не пишут снимков, журнала и истории.
+ *
+ * Прогрев останавливается, когда JFR (jdk.Compilation / jdk.CompilerInlining) покажет,
+ * что все методы горячего пути скомпилированы C2 (сами или заинлайнены в C2-компиляцию),
+ * либо по истечении quizbattle.warmup.max-duration. Слушатель ApplicationReadyEvent
+ * выполняется до публикации ReadinessState.ACCEPTING_TRAFFIC, поэтому
+ * /actuator/health/readiness становится UP только после прогрева
+ */
+@Component
+public class WarmupRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final String ROOM_PREFIX = "WARM";
+    private static final int C2_LEVEL = 4;
+    private static final long POLL_INTERVAL_MS = 5;
+
+    // Методы горячего пути нажатия (класс#метод)
+    private static final Set<String> HOT_METHODS = Set.of(
+            GameController.class.getName() + "#pressButton",
+            GameService.class.getName() + "#pressButton",
+            Room.class.getName() + "#pressButton",
+            Room.class.getName() + "#determineWinner",
+            GameMessage.class.getName() + "#buttonPressed",
+            GameMessage.class.getName() + "#roundEnded"
+    );
+
+    // Логгеры, пишущие INFO на каждый раунд: на время прогрева поднимаются до WARN
+    private static final List<String> QUIET_LOGGERS = List.of(
+            GameController.class.getName(),
+            GameService.class.getName()
+    );
+
+    private final GameService gameService;
+    private final MessageChannel clientInboundChannel;
+    private final ObjectMapper objectMapper;
+    private final LoggingSystem loggingSystem;
+
+    private final boolean enabled;
+    private final int roomCount;
+    private final int playersPerRoom;
+    private final Duration maxDuration;
+
+    private final AtomicLong warmupMs = new AtomicLong(-1);
+
+    public WarmupRunner(GameService gameService,
+                        @Qualifier("clientInboundChannel") MessageChannel clientInboundChannel,
+                        ObjectMapper objectMapper,
+                        LoggingSystem loggingSystem,
+                        MeterRegistry meterRegistry,
+                        @Value("${quizbattle.warmup.enabled:false}") boolean enabled,
+                        @Value("${quizbattle.warmup.rooms:200}") int roomCount,
+                        @Value("${quizbattle.warmup.players-per-room:4}") int playersPerRoom,
+                        @Value("${quizbattle.warmup.max-duration:PT30S}") Duration maxDuration) {
+        this.gameService = gameService;
+        this.clientInboundChannel = clientInboundChannel;
+        this.objectMapper = objectMapper;
+        this.loggingSystem = loggingSystem;
+        this.enabled = enabled;
+        this.roomCount = Math.max(1, Math.min(roomCount, 999));
+        this.playersPerRoom = Math.max(1, Math.min(playersPerRoom, Room.MAX_PLAYERS));
+        this.maxDuration = maxDuration;
+        Gauge.builder("quizbattle.warmup.duration", warmupMs, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("Time spent in JIT warm-up before accepting traffic")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + maxDuration.toMillis();
+        List<Room> rooms = new ArrayList<>(roomCount);
+        int rounds = 0;
+        Map<String, LogLevel> logLevels = quietLoggers();
+        try (CompilationWatcher watcher = CompilationWatcher.start(HOT_METHODS)) {
+            for (int i = 1; i <= roomCount; i++) {
+                rooms.add(openRoom(String.format("%s%03d", ROOM_PREFIX, i)));
+            }
+            while (!watcher.isComplete() && System.currentTimeMillis() < deadline) {
+                if (!playRound(rooms, deadline)) {
+                    break;
+                }
+                rounds++;
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            warmupMs.set(elapsed);
+            if (watcher.isComplete()) {
+                log.info("JIT warm-up finished in {} ms: {} rounds in {} rooms, all {} hot methods compiled by C2",
+                        elapsed, rounds, rooms.size(), HOT_METHODS.size());
+            } else {
+                log.warn("JIT warm-up stopped after {} ms ({} rounds in {} rooms){}; not compiled by C2: {}",
+                        elapsed, rounds, rooms.size(),
+                        watcher.isAvailable() ? "" : ", JFR unavailable", watcher.pending());
+            }
+        } catch (RuntimeException e) {
+            log.error("JIT warm-up failed: {}", e.getMessage(), e);
+        } finally {
+            rooms.forEach(room -> gameService.deleteRoom(room.getCode()));
+            logLevels.forEach(loggingSystem::setLogLevel);
+        }
+    }
+
+    /**
+     * Поднять уровень логгеров горячего пути до WARN; возвращает прежние настроенные уровни
+     */
+    private Map<String, LogLevel> quietLoggers() {
+        Map<String, LogLevel> previous = new HashMap<>();
+        for (String name : QUIET_LOGGERS) {
+            LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(name);
+            previous.put(name, configuration != null ? configuration.getConfiguredLevel() : null);
+            loggingSystem.setLogLevel(name, LogLevel.WARN);
+        }
+        return previous;
+    }
+
+    private Room openRoom(String code) {
+        List<Player> players = new ArrayList<>(playersPerRoom);
+        for (int i = 1; i <= playersPerRoom; i++) {
+            String playerId = code + "-P" + i;
+            Player player = new Player(playerId, playerId, null, playerId, true);
+            players.add(player);
+        }
+        return gameService.openSyntheticRoom(code, hostSessionOf(code), players);
+    }
+
+    /**
+     * Один раунд во всех комнатах. Входящий канал обрабатывает сообщения в пуле потоков,
+     * поэтому перед каждой следующей фазой ждем, пока все комнаты перейдут в нужное состояние
+     */
+    private boolean playRound(List<Room> rooms, long deadline) {
+        for (Room room : rooms) {
+            send("/start-round", hostSessionOf(room.getCode()), Map.of("roomCode", room.getCode()));
+        }
+        if (!awaitState(rooms, GameState.ACTIVE, deadline)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        for (Room room : rooms) {
+            List<Player> players = room.getPlayers();
+            for (int i = 0; i < players.size(); i++) {
+                Player player = players.get(i);
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("roomCode", room.getCode());
+                payload.put("playerId", player.getId());
+                payload.put("clientTimestamp", now - i);
+                send("/press-button", player.getSessionId(), payload);
+            }
+        }
+        if (!awaitState(rooms, GameState.ROUND_ENDED, deadline)) {
+            return false;
+        }
+        for (Room room : rooms) {
+            send("/reset-round", hostSessionOf(room.getCode()), Map.of("roomCode", room.getCode()));
+        }
+        return awaitState(rooms, GameState.WAITING, deadline);
+    }
+
+    private void send(String destination, String sessionId, Map<String, ?> payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/app" + destination);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(new StompPrincipal(sessionId));
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(payload);
+            clientInboundChannel.send(MessageBuilder.createMessage(body, accessor.getMessageHeaders()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean awaitState(List<Room> rooms, GameState state, long deadline) {
+        Predicate<Room> reached = room -> room.getGameState() == state;
+        while (!rooms.stream().allMatch(reached)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String hostSessionOf(String roomCode) {
+        return roomCode + "-HOST";
+    }
+
+    /**
+     * Наблюдение за C2-компиляциями через JFR. Метод считается прогретым, если он
+     * скомпилирован на уровне 4 сам или заинлайнен в компиляцию уровня 4
+     */
+    private static final class CompilationWatcher implements AutoCloseable {
+
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+        // compileId -> целевые методы, заинлайненные в эту компиляцию (до ее завершения)
+        private final Map<Long, Set<String>> inlined = new ConcurrentHashMap<>();
+        private final RecordingStream stream;
+
+        private CompilationWatcher(Set<String> targets, RecordingStream stream) {
+            this.pending.addAll(targets);
+            this.stream = stream;
+        }
+
+        static CompilationWatcher start(Set<String> targets) {
+            RecordingStream stream;
+            try {
+                stream = new RecordingStream();
+            } catch (RuntimeException | Error e) {
+                log.warn("JFR is not available, warm-up will run for the configured duration: {}", e.getMessage());
+                return new CompilationWatcher(targets, null);
+            }
+            CompilationWatcher watcher = new CompilationWatcher(targets, stream);
+            stream.enable("jdk.Compilation").withThreshold(Duration.ZERO);
+            stream.enable("jdk.CompilerInlining");
+            stream.setMaxAge(Duration.ofSeconds(10));
+            stream.onEvent("jdk.CompilerInlining", watcher::onInlining);
+            stream.onEvent("jdk.Compilation", watcher::onCompilation);
+            stream.startAsync();
+            return watcher;
+        }
+
+        private void onInlining(RecordedEvent event) {
+            if (!event.getBoolean("succeeded")) {
+                return;
+            }
+            RecordedObject callee = event.getValue("callee");
+            if (callee == null) {
+                return;
+            }
+            String key = callee.getString("type").replace('/', '.') + "#" + callee.getString("name");
+            if (pending.contains(key)) {
+                inlined.computeIfAbsent(event.getLong("compileId"), id -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+
+        private void onCompilation(RecordedEvent event) {
+            Set<String> inlinedTargets = inlined.remove(event.getLong("compileId"));
+            if (event.getInt("compileLevel") != C2_LEVEL || !event.getBoolean("succeded")) {
+                return;
+            }
+            RecordedMethod method = event.getValue("method");
+            if (method != null) {
+                pending.remove(method.getType().getName() + "#" + method.getName());
+            }
+            if (inlinedTargets != null) {
+                pending.removeAll(inlinedTargets);
+            }
+        }
+
+        boolean isAvailable() {
+            return stream != null;
+        }
+
+        boolean isComplete() {
+            return stream != null && pending.isEmpty();
+        }
+
+        Set<String> pending() {
+            return Set.copyOf(pending);
+        }
+
+        @Override
+        public void close() {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
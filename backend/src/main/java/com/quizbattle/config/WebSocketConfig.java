@@ -1,15 +1,52 @@
 package com.quizbattle.config;
 
+import com.quizbattle.service.SpectatorStreamService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.Set;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final SpectatorStreamService spectatorStreamService;
+    private final OutboundBufferingDecoratorFactory outboundBuffering;
+    private final InboundLaneExecutor inboundLanes;
+
+    public WebSocketConfig(SpectatorStreamService spectatorStreamService,
+                           OutboundBufferingDecoratorFactory outboundBuffering,
+                           MeterRegistry meterRegistry,
+                           @Value("${quizbattle.inbound.press-destinations:/app/press-button}") Set<String> pressDestinations,
+                           @Value("${quizbattle.inbound.blocking-destinations:/app/create-room,/app/join-room}") Set<String> blockingDestinations,
+                           @Value("${quizbattle.inbound.press-threads:2}") int pressThreads,
+                           @Value("${quizbattle.inbound.control-threads:4}") int controlThreads,
+                           @Value("${quizbattle.inbound.blocking-threads:8}") int blockingThreads,
+                           @Value("${quizbattle.execution.mode:platform}") ExecutionMode executionMode) {
+        this.spectatorStreamService = spectatorStreamService;
+        this.outboundBuffering = outboundBuffering;
+        this.inboundLanes = new InboundLaneExecutor(pressDestinations, blockingDestinations,
+                pressThreads, controlThreads, blockingThreads, executionMode);
+        this.inboundLanes.registerMetrics(meterRegistry);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Нажатия, управляющие команды и команды с работой в БД обрабатываются в разных полосах
+        registration.taskExecutor(inboundLanes);
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Клиенты подписываются на /topic для broadcast и /queue для персональных сообщений
@@ -18,6 +55,16 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setApplicationDestinationPrefixes("/app");
         // Префикс для персональных сообщений (/user/{sessionId}/queue/...)
         config.setUserDestinationPrefix("/user");
+        // Сообщения комнат, уже сериализованные для брокера, дублируются SSE-зрителям
+        config.configureBrokerChannel().interceptors(new ChannelInterceptor() {
+            @Override
+            public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+                if (sent) {
+                    spectatorStreamService.published(SimpMessageHeaderAccessor.getDestination(message.getHeaders()),
+                            message.getPayload());
+                }
+            }
+        });
     }
 
     @Override
@@ -28,5 +75,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-}
 
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Своя очередь исходящих сообщений каждой сессии: устаревшие состояния заменяются новыми
+        registration.addDecoratorFactory(outboundBuffering);
+    }
+}
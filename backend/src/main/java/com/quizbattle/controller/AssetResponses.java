@@ -0,0 +1,130 @@
+package com.quizbattle.controller;
+
+import com.quizbattle.service.AssetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Ответ с файлом-ассетом: строгий ETag (304 на If-None-Match), Range-запросы
+ * и вечное кеширование для URL с версией содержимого (?v=хэш).
+ * Файлы на диске отдаются без копирования через пользовательское пространство:
+ * через sendfile Tomcat, а если он недоступен (например, TLS) - из отображенного в память региона
+ */
+final class AssetResponses {
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
+    // Атрибуты запроса Tomcat для отдачи файла через sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private AssetResponses() {
+    }
+
+    /**
+     * @param immutable URL содержит версию отдаваемого содержимого - можно кешировать навсегда
+     */
+    static ResponseEntity<?> serve(AssetService.Asset asset, boolean immutable,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (new ServletWebRequest(request, response).checkNotModified(asset.getETag())) {
+            return null;
+        }
+
+        // По старой версии отдаем текущее содержимое, но без вечного кеширования
+        CacheControl cacheControl = immutable ? IMMUTABLE : REVALIDATE;
+        // If-Range с другим ETag означает, что файл изменился - нужен целиком
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean rangeAllowed = ifRange == null || ifRange.equals(asset.getETag());
+
+        if (asset.isFileBacked()) {
+            serveFile(asset, cacheControl, rangeAllowed, request, response);
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .contentType(asset.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(asset));
+        // Тело-ресурс Spring отдает частями по заголовку Range (206)
+        if (!rangeAllowed) {
+            return builder.body(asset.getBytes());
+        }
+        return builder.body(new ByteArrayResource(asset.getBytes()));
+    }
+
+    private static void serveFile(AssetService.Asset asset, CacheControl cacheControl, boolean rangeAllowed,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = asset.getLength();
+        long start = 0;
+        long end = length - 1;
+        String range = rangeAllowed ? request.getHeader(HttpHeaders.RANGE) : null;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Несколько диапазонов не поддерживаем - отдаем файл целиком
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    if (start >= length || start > end) {
+                        throw new IllegalArgumentException("Unsatisfiable range " + range);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        boolean partial = end - start + 1 < length;
+        response.setStatus(partial ? HttpServletResponse.SC_PARTIAL_CONTENT : HttpServletResponse.SC_OK);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(asset));
+        response.setContentType(asset.getContentType().toString());
+        response.setContentLengthLong(end - start + 1);
+
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat сам откроет файл и отправит регион после возврата из обработчика
+            request.setAttribute(SENDFILE_FILENAME, asset.getFile().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(asset.getFile())) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start + 1);
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (region.hasRemaining()) {
+                out.write(region);
+            }
+        }
+    }
+
+    private static String contentDisposition(AssetService.Asset asset) {
+        return "inline; filename=\"" + asset.getFilename() + "\"";
+    }
+}
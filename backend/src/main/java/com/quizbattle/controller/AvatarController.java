@@ -1,46 +1,40 @@
 package com.quizbattle.controller;
 
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import com.quizbattle.service.AssetService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/avatars")
 public class AvatarController {
     
+    private final AssetService assetService;
+    
+    public AvatarController(AssetService assetService) {
+        this.assetService = assetService;
+    }
+    
     /**
-     * Получить аватар по имени файла
+     * Получить аватар по имени файла (из внешнего каталога или кеша classpath, с ETag и поддержкой Range)
      */
     @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> getAvatar(@PathVariable String filename) {
-        try {
-            Resource resource = new ClassPathResource("avatars/" + filename);
-            
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Определяем Content-Type
-            String contentType = "image/png";
-            if (filename.toLowerCase().endsWith(".jpg") || filename.toLowerCase().endsWith(".jpeg")) {
-                contentType = "image/jpeg";
-            } else if (filename.toLowerCase().endsWith(".gif")) {
-                contentType = "image/gif";
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
-        } catch (Exception e) {
+    public ResponseEntity<?> getAvatar(@PathVariable String filename,
+                                       @RequestParam(name = "v", required = false) String version,
+                                       HttpServletRequest request,
+                                       HttpServletResponse response) throws IOException {
+        Optional<AssetService.Asset> asset = assetService.getAsset(AssetService.AVATARS, filename);
+        if (asset.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        return AssetResponses.serve(asset.get(), asset.get().getVersion().equals(version), request, response);
     }
 }
-
@@ -1,46 +1,115 @@
 package com.quizbattle.controller;
 
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
+import com.quizbattle.service.AssetService;
+import com.quizbattle.service.ChapterCatalogService;
+import com.quizbattle.service.ImageVariantService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/chapters")
 public class ChapterController {
     
+    // Client hints о ширине экрана (Sec-CH-* и устаревшие имена без префикса)
+    private static final String ACCEPT_CH = "Sec-CH-Width, Sec-CH-Viewport-Width, Sec-CH-DPR";
+    private static final String VARY_HINTS = "Sec-CH-Width, Sec-CH-Viewport-Width, Sec-CH-DPR, Width, Viewport-Width, DPR";
+    
+    private final AssetService assetService;
+    private final ImageVariantService imageVariantService;
+    private final ChapterCatalogService chapterCatalogService;
+    
+    public ChapterController(AssetService assetService, ImageVariantService imageVariantService,
+                             ChapterCatalogService chapterCatalogService) {
+        this.assetService = assetService;
+        this.imageVariantService = imageVariantService;
+        this.chapterCatalogService = chapterCatalogService;
+    }
+    
     /**
-     * Получить изображение главы по имени файла (формат: chapter-part.jpg)
+     * Манифест глав: названия, части, URL картинок с версией, хэши и размеры.
+     * ETag - версия манифеста, повторный запрос с If-None-Match получает 304
+     */
+    @GetMapping("/manifest")
+    public ResponseEntity<?> getManifest(HttpServletRequest request, HttpServletResponse response) {
+        ChapterCatalogService.Manifest manifest = chapterCatalogService.getManifest();
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + manifest.getVersion() + "\"")) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .body(manifest);
+    }
+    
+    /**
+     * Получить изображение главы по имени файла (формат: chapter-part.jpg).
+     * Файл отдается из внешнего каталога или кеша classpath с ETag; URL с ?v=версия кешируется браузером навсегда.
+     * Ширина экрана в пикселях берется из параметра w или из client hints - тогда отдается уменьшенный вариант
      */
     @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> getChapterImage(@PathVariable String filename) {
-        try {
-            Resource resource = new ClassPathResource("chapters/" + filename);
-            
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Определяем Content-Type
-            String contentType = "image/jpeg";
-            if (filename.toLowerCase().endsWith(".png")) {
-                contentType = "image/png";
-            } else if (filename.toLowerCase().endsWith(".gif")) {
-                contentType = "image/gif";
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
-        } catch (Exception e) {
+    public ResponseEntity<?> getChapterImage(@PathVariable String filename,
+                                             @RequestParam(name = "v", required = false) String version,
+                                             @RequestParam(name = "w", required = false) Integer width,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) throws IOException {
+        Optional<AssetService.Asset> source = assetService.getAsset(AssetService.CHAPTERS, filename);
+        if (source.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        
+        response.setHeader("Accept-CH", ACCEPT_CH);
+        if (width == null) {
+            response.addHeader(HttpHeaders.VARY, VARY_HINTS);
+        }
+        Integer targetWidth = width != null && width > 0 ? width : hintedWidth(request);
+        Optional<AssetService.Asset> selected = targetWidth != null
+                ? imageVariantService.select(source.get(), targetWidth)
+                : source;
+        // Пока вариант строится, отдаем исходник, но не кешируем его навсегда под этим URL
+        boolean immutable = selected.isPresent() && source.get().getVersion().equals(version);
+        return AssetResponses.serve(selected.orElse(source.get()), immutable, request, response);
+    }
+    
+    /**
+     * Ширина в физических пикселях из client hints: Width или Viewport-Width * DPR
+     */
+    private static Integer hintedWidth(HttpServletRequest request) {
+        Double width = hint(request, "Sec-CH-Width", "Width");
+        if (width != null) {
+            return (int) Math.ceil(width);
+        }
+        Double viewportWidth = hint(request, "Sec-CH-Viewport-Width", "Viewport-Width");
+        if (viewportWidth == null) {
+            return null;
+        }
+        Double dpr = hint(request, "Sec-CH-DPR", "DPR");
+        return (int) Math.ceil(viewportWidth * (dpr != null ? dpr : 1.0));
+    }
+    
+    private static Double hint(HttpServletRequest request, String name, String legacyName) {
+        String value = request.getHeader(name);
+        if (value == null) {
+            value = request.getHeader(legacyName);
+        }
+        if (value == null) {
+            return null;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            return parsed > 0 ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
-
@@ -1,6 +1,7 @@
 package com.quizbattle.controller;
 
 import com.quizbattle.model.*;
+import com.quizbattle.service.ChapterCatalogService;
 import com.quizbattle.service.GameService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,10 +20,13 @@ public class GameController {
     
     private final GameService gameService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChapterCatalogService chapterCatalogService;
     
-    public GameController(GameService gameService, SimpMessagingTemplate messagingTemplate) {
+    public GameController(GameService gameService, SimpMessagingTemplate messagingTemplate,
+                          ChapterCatalogService chapterCatalogService) {
         this.gameService = gameService;
         this.messagingTemplate = messagingTemplate;
+        this.chapterCatalogService = chapterCatalogService;
         // Передаем messagingTemplate в GameService для уведомлений
         gameService.setMessagingTemplate(messagingTemplate);
     }
@@ -207,8 +211,11 @@ public class GameController {
         Room room = gameService.getRoom(roomCode);
         Player player = room.getPlayerById(playerId);
         
-        log.info("Button pressed by: {} in room: {}, clientTime: {}, serverTime: {}", 
-            player.getName(), roomCode, clientTimestamp, System.currentTimeMillis());
+        // Нажатия пишутся в журнал раундов, здесь только отладочный лог
+        if (log.isDebugEnabled()) {
+            log.debug("Button pressed by: {} in room: {}, clientTime: {}, serverTime: {}",
+                player.getName(), roomCode, clientTimestamp, press.getServerReceiveTime());
+        }
         
         // Отправляем промежуточное обновление (нажатие зарегистрировано, но победитель еще не определен)
         messagingTemplate.convertAndSend(
@@ -352,11 +359,24 @@ public class GameController {
         Room room = gameService.getRoom(roomCode);
         log.info("Chapter updated: chapter={}, part={} in room: {}", chapter, part, roomCode);
         
-        // Отправляем обновление главы всем участникам
+        // Отправляем обновление главы всем участникам (с версионированным URL картинки)
+        String imageUrl = chapter != null && part != null
+                ? chapterCatalogService.getPart(chapter, part).map(ChapterCatalogService.Part::getUrl).orElse(null)
+                : null;
         messagingTemplate.convertAndSend(
             "/topic/room/" + roomCode,
-            GameMessage.chapterUpdated(room)
+            GameMessage.chapterUpdated(room, imageUrl)
         );
+        
+        // Подсказка заранее загрузить картинку следующей части, пока ведущий не переключил главу
+        if (chapter != null) {
+            chapterCatalogService.getNextPart(chapter, part != null ? part : 0).ifPresent(next ->
+                messagingTemplate.convertAndSend(
+                    "/topic/room/" + roomCode,
+                    GameMessage.chapterPrefetch(room, next.getChapter(), next.getPart(), next.getUrl())
+                )
+            );
+        }
     }
     
     private void sendError(String sessionId, String message) {
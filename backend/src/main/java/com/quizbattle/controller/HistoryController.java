@@ -0,0 +1,52 @@
+package com.quizbattle.controller;
+
+import com.quizbattle.service.RoundHistoryExporter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+    
+    private final RoundHistoryExporter exporter;
+    
+    public HistoryController(RoundHistoryExporter exporter) {
+        this.exporter = exporter;
+    }
+    
+    /**
+     * Выгрузить историю раундов и нажатий (NDJSON или CSV), по всем комнатам или по одной
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String roomCode) {
+        RoundHistoryExporter.Format exportFormat;
+        try {
+            exportFormat = RoundHistoryExporter.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Неизвестный формат: " + format));
+        }
+        
+        if (roomCode != null && !roomCode.matches("[A-Za-z0-9]{1,10}")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Неверный код комнаты"));
+        }
+        
+        boolean csv = exportFormat == RoundHistoryExporter.Format.CSV;
+        String filename = "rounds" + (roomCode != null ? "-" + roomCode.toUpperCase() : "") + (csv ? ".csv" : ".ndjson");
+        StreamingResponseBody body = out -> exporter.export(roomCode, exportFormat, out);
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
@@ -1,21 +1,48 @@
 package com.quizbattle.controller;
 
 import com.quizbattle.model.*;
+import com.quizbattle.service.ChapterCatalogService;
 import com.quizbattle.service.GameService;
+import com.quizbattle.service.RoomStateWaiters;
+import com.quizbattle.service.SpectatorStreamService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @org.springframework.web.bind.annotation.RestController
 @RequestMapping("/api")
 public class RestController {
     
     private final GameService gameService;
+    private final ChapterCatalogService chapterCatalogService;
+    private final RoomStateWaiters roomStateWaiters;
+    private final SpectatorStreamService spectatorStreamService;
+    private final Duration longPollMaxWait;
     
-    public RestController(GameService gameService) {
+    public RestController(GameService gameService,
+                          ChapterCatalogService chapterCatalogService,
+                          RoomStateWaiters roomStateWaiters,
+                          SpectatorStreamService spectatorStreamService,
+                          @Value("${quizbattle.rooms.long-poll.max-wait:PT30S}") Duration longPollMaxWait) {
         this.gameService = gameService;
+        this.chapterCatalogService = chapterCatalogService;
+        this.roomStateWaiters = roomStateWaiters;
+        this.spectatorStreamService = spectatorStreamService;
+        this.longPollMaxWait = longPollMaxWait;
     }
     
     /**
@@ -36,15 +63,87 @@ public class RestController {
     }
     
     /**
-     * Получить состояние комнаты для экрана
+     * Получить состояние комнаты для экрана.
+     * ETag - версия состояния комнаты: запрос с совпадающим If-None-Match получает 304 без сборки ответа
      */
     @GetMapping("/room/{code}/state")
-    public ResponseEntity<?> getRoomState(@PathVariable String code) {
+    public ResponseEntity<?> getRoomState(@PathVariable String code, WebRequest webRequest) {
         Room room = gameService.getRoom(code);
         if (room == null) {
             return ResponseEntity.notFound().build();
         }
         
+        long version = room.getStateVersion();
+        if (webRequest.checkNotModified(stateETag(version))) {
+            return null;
+        }
+        return roomStateResponse(room, code, version);
+    }
+    
+    /**
+     * Long-poll состояния комнаты для экранов без WebSocket: ответ приходит, как только версия
+     * комнаты станет больше since, или через wait мс (не дольше quizbattle.rooms.long-poll.max-wait) с 304
+     */
+    @GetMapping(value = "/room/{code}/state", params = {"since", "wait"})
+    public DeferredResult<ResponseEntity<?>> awaitRoomState(@PathVariable String code,
+                                                            @RequestParam long since,
+                                                            @RequestParam("wait") long waitMs) {
+        long timeoutMs = Math.max(0, Math.min(waitMs, longPollMaxWait.toMillis()));
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs,
+                () -> ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(stateETag(since)).build());
+        
+        Room room = gameService.getRoom(code);
+        if (room == null) {
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        long version = room.getStateVersion();
+        if (version > since || timeoutMs == 0) {
+            result.setResult(version > since
+                    ? roomStateResponse(room, code, version)
+                    : ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(stateETag(version)).build());
+            return result;
+        }
+        
+        Optional<Runnable> cancel = roomStateWaiters.await(room, since, changed -> result.setResult(changed != null
+                ? roomStateResponse(changed, code, changed.getStateVersion())
+                : ResponseEntity.notFound().build()));
+        if (cancel.isEmpty()) {
+            result.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "Слишком много ожидающих запросов")));
+            return result;
+        }
+        result.onCompletion(cancel.get());
+        return result;
+    }
+    
+    /**
+     * Поток событий комнаты для зрителей (Server-Sent Events): те же сообщения, что и /topic/room/{code},
+     * без STOMP-сессии. 503, если подключено слишком много зрителей
+     */
+    @GetMapping(value = "/room/{code}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamRoomEvents(@PathVariable String code,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        Room room = gameService.getRoom(code);
+        if (room == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        try {
+            spectatorStreamService.subscribe(room, request, response);
+        } catch (IllegalStateException e) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+        }
+    }
+    
+    private static String stateETag(long version) {
+        return "\"" + version + "\"";
+    }
+    
+    private static ResponseEntity<?> roomStateResponse(Room room, String code, long version) {
         // Создаем GameMessage с состоянием комнаты
         GameMessage roomState = GameMessage.roomState(room);
         
@@ -59,8 +158,13 @@ public class RestController {
         response.put("winnerAvatar", roomState.getWinnerAvatar() != null ? roomState.getWinnerAvatar() : "");
         response.put("chapter", roomState.getChapter());
         response.put("part", roomState.getPart());
+        response.put("version", version);
         
-        return ResponseEntity.ok(response);
+        // Версия читается до сборки ответа: состояние в теле не старше ETag
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(stateETag(version))
+                .body(response);
     }
     
     /**
@@ -72,16 +176,11 @@ public class RestController {
     }
     
     /**
-     * Получить названия глав викторины
+     * Получить названия глав викторины (из каталога глав)
      */
     @GetMapping("/chapters/names")
     public ResponseEntity<?> getChapterNames() {
-        Map<Integer, String> chapterNames = new HashMap<>();
-        chapterNames.put(1, "Таможня «Граница Выходного Дня»");
-        chapterNames.put(2, "Кабак «Последняя Пятница»");
-        chapterNames.put(3, "Опенспейсные Топи");
-        chapterNames.put(4, "Цитадель Вечного Обременения");
-        return ResponseEntity.ok(Map.of("chapters", chapterNames));
+        return ResponseEntity.ok(Map.of("chapters", chapterCatalogService.getNames()));
     }
     
     /**
@@ -0,0 +1,35 @@
+package com.quizbattle.controller;
+
+import com.quizbattle.service.RoundStatsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/room/{code}/stats")
+public class StatsController {
+    
+    private final RoundStatsService statsService;
+    
+    public StatsController(RoundStatsService statsService) {
+        this.statsService = statsService;
+    }
+    
+    /**
+     * Время реакции (перцентили) и победы по игрокам комнаты
+     */
+    @GetMapping("/players")
+    public ResponseEntity<?> getPlayerStats(@PathVariable String code) {
+        return ResponseEntity.ok(statsService.getPlayerStats(code));
+    }
+    
+    /**
+     * Время реакции (перцентили) и победы по командам комнаты
+     */
+    @GetMapping("/teams")
+    public ResponseEntity<?> getTeamStats(@PathVariable String code) {
+        return ResponseEntity.ok(statsService.getTeamStats(code));
+    }
+}
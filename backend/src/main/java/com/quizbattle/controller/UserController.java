@@ -2,25 +2,45 @@ package com.quizbattle.controller;
 
 import com.quizbattle.dto.*;
 import com.quizbattle.service.GameService;
+import com.quizbattle.model.entity.User;
+import com.quizbattle.service.RoomRecords;
+import com.quizbattle.service.RosterService;
+import com.quizbattle.service.UserImportService;
 import com.quizbattle.service.UserService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @org.springframework.web.bind.annotation.RestController
 @RequestMapping("/api/users")
 public class UserController {
     
+    private static final int MAX_INVITATIONS_PAGE = 200;
+    private static final int MAX_USERS_PAGE = 500;
+    
     private final UserService userService;
     private final GameService gameService;
+    private final RosterService rosterService;
+    private final UserImportService userImportService;
+    private final RoomRecords roomRecords;
     
-    public UserController(UserService userService, GameService gameService) {
+    public UserController(UserService userService, GameService gameService, RosterService rosterService,
+                          UserImportService userImportService, RoomRecords roomRecords) {
         this.userService = userService;
         this.gameService = gameService;
+        this.rosterService = rosterService;
+        this.userImportService = userImportService;
+        this.roomRecords = roomRecords;
     }
     
     /**
@@ -56,14 +76,64 @@ public class UserController {
     }
     
     /**
-     * Получить список всех пользователей
+     * Получить список пользователей из ростера в памяти.
+     * Без limit - весь список (готовый JSON), с limit - страница (after - id последнего полученного).
+     * ETag - версия ростера: при совпадении с If-None-Match отвечаем 304
      */
     @GetMapping
-    public ResponseEntity<?> getAllUsers() {
-        List<UserResponse> users = userService.getAllUsers().stream()
-                .map(UserResponse::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(Map.of("users", users));
+    public ResponseEntity<?> getAllUsers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        RosterService.Roster roster = rosterService.getRoster();
+        if (request.checkNotModified(roster.getETag())) {
+            return null;
+        }
+        
+        if (limit == null) {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(roster.getBody());
+        }
+        
+        int pageSize = Math.max(1, Math.min(limit, MAX_USERS_PAGE));
+        List<UserResponse> users = roster.page(after, pageSize);
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", users);
+        response.put("nextCursor", users.size() == pageSize ? users.get(users.size() - 1).getId() : null);
+        response.put("version", roster.getVersion());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .body(response);
+    }
+    
+    /**
+     * Импорт пользователей и команд из CSV (с заголовком) или NDJSON, одна запись на строку.
+     * Тело запроса читается потоково, существующие пользователи обновляются по username
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson", "text/plain", "application/octet-stream"})
+    public ResponseEntity<?> importUsers(
+            @RequestParam Long adminUserId,
+            @RequestParam(defaultValue = "csv") String format,
+            InputStream body) throws IOException {
+        UserImportService.Format importFormat;
+        try {
+            importFormat = UserImportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Неизвестный формат: " + format));
+        }
+        
+        boolean admin = userService.getUserById(adminUserId).map(User::isAdmin).orElse(false);
+        if (!admin) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Только администратор может импортировать пользователей"));
+        }
+        
+        try {
+            return ResponseEntity.ok(userImportService.importUsers(body, importFormat));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -86,6 +156,8 @@ public class UserController {
             @RequestBody InvitationRequest request,
             @RequestParam Long hostUserId) {
         try {
+            // Запись только что созданной комнаты может быть еще в очереди на вставку - тогда 503
+            roomRecords.checkPersisted(request.getRoomCode());
             var invitation = userService.createInvitation(
                     request.getRoomCode(),
                     request.getInvitedUserId(),
@@ -94,20 +166,50 @@ public class UserController {
             return ResponseEntity.ok(new InvitationResponse(invitation));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return roomNotPersistedYet(e);
+        }
+    }
+    
+    /**
+     * Пригласить в комнату сразу нескольких пользователей
+     */
+    @PostMapping("/invitations/batch")
+    public ResponseEntity<?> createInvitations(
+            @RequestBody BatchInvitationRequest request,
+            @RequestParam Long hostUserId) {
+        try {
+            roomRecords.checkPersisted(request.getRoomCode());
+            return ResponseEntity.ok(userService.createInvitations(
+                    request.getRoomCode(),
+                    request.getInvitedUserIds(),
+                    hostUserId
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return roomNotPersistedYet(e);
         }
     }
     
     /**
-     * Получить список приглашений пользователя
+     * Получить список приглашений пользователя (постранично: after - id последнего полученного приглашения)
      */
     @GetMapping("/{userId}/invitations")
-    public ResponseEntity<?> getInvitations(@PathVariable Long userId) {
+    public ResponseEntity<?> getInvitations(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<InvitationResponse> invitations = userService.getPendingInvitationsForUser(userId)
-                    .stream()
-                    .map(InvitationResponse::new)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(Map.of("invitations", invitations));
+            int pageSize = Math.max(1, Math.min(limit, MAX_INVITATIONS_PAGE));
+            List<InvitationResponse> invitations = userService.getPendingInvitationsForUser(userId, after, pageSize);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("invitations", invitations);
+            response.put("nextCursor", invitations.size() == pageSize
+                    ? invitations.get(invitations.size() - 1).getId()
+                    : null);
+            return ResponseEntity.ok(response);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -163,14 +265,20 @@ public class UserController {
     @GetMapping("/rooms/{roomCode}/invitations")
     public ResponseEntity<?> getRoomInvitations(@PathVariable String roomCode) {
         try {
-            List<InvitationResponse> invitations = userService.getInvitationsForRoom(roomCode)
-                    .stream()
-                    .map(InvitationResponse::new)
-                    .collect(Collectors.toList());
+            List<InvitationResponse> invitations = userService.getInvitationsForRoom(roomCode);
             return ResponseEntity.ok(Map.of("invitations", invitations));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+    
+    /**
+     * Запись комнаты еще в очереди на вставку: 503 сразу, без ожидания в потоке запроса
+     */
+    private static ResponseEntity<?> roomNotPersistedYet(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", e.getMessage()));
+    }
 }
 
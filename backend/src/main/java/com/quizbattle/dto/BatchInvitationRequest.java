@@ -0,0 +1,26 @@
+package com.quizbattle.dto;
+
+import java.util.List;
+
+public class BatchInvitationRequest {
+    private String roomCode;
+    private List<Long> invitedUserIds;
+    
+    public BatchInvitationRequest() {}
+    
+    public String getRoomCode() {
+        return roomCode;
+    }
+    
+    public void setRoomCode(String roomCode) {
+        this.roomCode = roomCode;
+    }
+    
+    public List<Long> getInvitedUserIds() {
+        return invitedUserIds;
+    }
+    
+    public void setInvitedUserIds(List<Long> invitedUserIds) {
+        this.invitedUserIds = invitedUserIds;
+    }
+}
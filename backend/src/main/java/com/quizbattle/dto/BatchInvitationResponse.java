@@ -0,0 +1,36 @@
+package com.quizbattle.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchInvitationResponse {
+    private List<InvitationResponse> invitations = new ArrayList<>(); // Созданные или повторно открытые
+    private List<Long> skippedUserIds = new ArrayList<>(); // Уже приглашены (ожидают ответа или приняли)
+    private List<Long> unknownUserIds = new ArrayList<>(); // Пользователи не найдены
+    
+    public BatchInvitationResponse() {}
+    
+    public List<InvitationResponse> getInvitations() {
+        return invitations;
+    }
+    
+    public void setInvitations(List<InvitationResponse> invitations) {
+        this.invitations = invitations;
+    }
+    
+    public List<Long> getSkippedUserIds() {
+        return skippedUserIds;
+    }
+    
+    public void setSkippedUserIds(List<Long> skippedUserIds) {
+        this.skippedUserIds = skippedUserIds;
+    }
+    
+    public List<Long> getUnknownUserIds() {
+        return unknownUserIds;
+    }
+    
+    public void setUnknownUserIds(List<Long> unknownUserIds) {
+        this.unknownUserIds = unknownUserIds;
+    }
+}
@@ -3,6 +3,8 @@ package com.quizbattle.dto;
 import com.quizbattle.model.entity.RoomInvitation;
 import com.quizbattle.model.entity.User;
 
+import java.time.LocalDateTime;
+
 public class InvitationResponse {
     private Long id;
     private String roomCode;
@@ -20,6 +22,19 @@ public class InvitationResponse {
         this.createdAt = invitation.getCreatedAt().toString();
     }
     
+    /**
+     * Конструктор для JPQL-проекции (все поля одним запросом, без ленивой загрузки сущностей)
+     */
+    public InvitationResponse(Long id, String roomCode, Long userId, String username, String fullName,
+                              String nickname, String avatar, RoomInvitation.InvitationStatus status,
+                              LocalDateTime createdAt) {
+        this.id = id;
+        this.roomCode = roomCode;
+        this.invitedUser = new UserInfo(userId, username, fullName, nickname, avatar);
+        this.status = status.name();
+        this.createdAt = createdAt.toString();
+    }
+    
     public static class UserInfo {
         private Long id;
         private String username;
@@ -35,6 +50,14 @@ public class InvitationResponse {
             this.avatar = user.getAvatar();
         }
         
+        public UserInfo(Long id, String username, String fullName, String nickname, String avatar) {
+            this.id = id;
+            this.username = username;
+            this.fullName = fullName;
+            this.nickname = nickname;
+            this.avatar = avatar;
+        }
+        
         public Long getId() { return id; }
         public void setId(Long id) { this.id = id; }
         public String getUsername() { return username; }
@@ -0,0 +1,54 @@
+package com.quizbattle.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserImportResponse {
+    private long rowsRead;
+    private long imported; // Созданные или обновленные пользователи
+    private long rejected; // Строки с ошибками (пропущены)
+    private List<String> teamsCreated = new ArrayList<>();
+    private List<String> errors = new ArrayList<>(); // Первые ошибки с номерами строк
+    
+    public UserImportResponse() {}
+    
+    public long getRowsRead() {
+        return rowsRead;
+    }
+    
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+    
+    public long getImported() {
+        return imported;
+    }
+    
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+    
+    public long getRejected() {
+        return rejected;
+    }
+    
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+    
+    public List<String> getTeamsCreated() {
+        return teamsCreated;
+    }
+    
+    public void setTeamsCreated(List<String> teamsCreated) {
+        this.teamsCreated = teamsCreated;
+    }
+    
+    public List<String> getErrors() {
+        return errors;
+    }
+    
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
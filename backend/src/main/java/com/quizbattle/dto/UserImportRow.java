@@ -0,0 +1,73 @@
+package com.quizbattle.dto;
+
+/**
+ * Строка импорта пользователей (CSV или NDJSON).
+ * Обязателен только username, пустые поля при обновлении существующего пользователя не меняются
+ */
+public class UserImportRow {
+    private String username;
+    private String password;
+    private String fullName;
+    private String nickname;
+    private String avatar;
+    private String role;
+    private String team; // Название команды
+    
+    public UserImportRow() {}
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public void setUsername(String username) {
+        this.username = username;
+    }
+    
+    public String getPassword() {
+        return password;
+    }
+    
+    public void setPassword(String password) {
+        this.password = password;
+    }
+    
+    public String getFullName() {
+        return fullName;
+    }
+    
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+    
+    public String getNickname() {
+        return nickname;
+    }
+    
+    public void setNickname(String nickname) {
+        this.nickname = nickname;
+    }
+    
+    public String getAvatar() {
+        return avatar;
+    }
+    
+    public void setAvatar(String avatar) {
+        this.avatar = avatar;
+    }
+    
+    public String getRole() {
+        return role;
+    }
+    
+    public void setRole(String role) {
+        this.role = role;
+    }
+    
+    public String getTeam() {
+        return team;
+    }
+    
+    public void setTeam(String team) {
+        this.team = team;
+    }
+}
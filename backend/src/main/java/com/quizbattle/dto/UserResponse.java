@@ -10,6 +10,7 @@ public class UserResponse {
     private String nickname;
     private String avatar;
     private UserRole role;
+    private Long teamId;
     
     public UserResponse() {}
     
@@ -20,6 +21,22 @@ public class UserResponse {
         this.nickname = user.getNickname();
         this.avatar = user.getAvatar();
         this.role = user.getRole();
+        // id ленивой ссылки на команду доступен без загрузки Team
+        this.teamId = user.getTeam() != null ? user.getTeam().getId() : null;
+    }
+    
+    /**
+     * Конструктор для JPQL-проекции (все поля одним запросом)
+     */
+    public UserResponse(Long id, String username, String fullName, String nickname, String avatar,
+                        UserRole role, Long teamId) {
+        this.id = id;
+        this.username = username;
+        this.fullName = fullName;
+        this.nickname = nickname;
+        this.avatar = avatar;
+        this.role = role;
+        this.teamId = teamId;
     }
     
     public Long getId() {
@@ -70,6 +87,14 @@ public class UserResponse {
         this.role = role;
     }
     
+    public Long getTeamId() {
+        return teamId;
+    }
+    
+    public void setTeamId(Long teamId) {
+        this.teamId = teamId;
+    }
+    
     public boolean isAdmin() {
         return role == UserRole.ADMIN;
     }
@@ -0,0 +1,105 @@
+package com.quizbattle.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Завершенный раунд: неизменяемая копия для асинхронной записи в историю и статистики
+ */
+public class CompletedRound {
+    private final UUID id;
+    private final String roomCode;
+    private final long startedAt;
+    private final long endedAt;
+    private final String winnerId;
+    private final Integer winnerTeamId;
+    private final Integer chapter;
+    private final Integer part;
+    private final List<Press> presses;
+    
+    private CompletedRound(UUID id, String roomCode, long startedAt, long endedAt, String winnerId,
+                           Integer winnerTeamId, Integer chapter, Integer part, List<Press> presses) {
+        this.id = id;
+        this.roomCode = roomCode;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+        this.winnerId = winnerId;
+        this.winnerTeamId = winnerTeamId;
+        this.chapter = chapter;
+        this.part = part;
+        this.presses = presses;
+    }
+    
+    /**
+     * Снять копию текущего раунда комнаты (null, если раунд не начинался)
+     */
+    public static CompletedRound of(Room room) {
+        synchronized (room) {
+            Long startedAt = room.getRoundStartTime();
+            if (startedAt == null) {
+                return null;
+            }
+            
+            List<Press> presses = new ArrayList<>();
+            for (ButtonPress press : room.getButtonPresses()) {
+                Player player = room.getPlayerById(press.getPlayerId());
+                presses.add(new Press(
+                        press.getPlayerId(),
+                        player != null ? player.getTeamId() : null,
+                        press.getPosition(),
+                        press.getTimestamp(),
+                        press.getServerReceiveTime(),
+                        Math.max(0, press.getServerReceiveTime() - startedAt)));
+            }
+            
+            Integer winnerTeamId = null;
+            if (room.getWinnerId() != null) {
+                Player winner = room.getPlayerById(room.getWinnerId());
+                winnerTeamId = winner != null ? winner.getTeamId() : null;
+            }
+            
+            return new CompletedRound(UUID.randomUUID(), room.getCode(), startedAt, System.currentTimeMillis(),
+                    room.getWinnerId(), winnerTeamId, room.getCurrentChapter(), room.getCurrentPart(), presses);
+        }
+    }
+    
+    public UUID getId() { return id; }
+    public String getRoomCode() { return roomCode; }
+    public long getStartedAt() { return startedAt; }
+    public long getEndedAt() { return endedAt; }
+    public String getWinnerId() { return winnerId; }
+    public Integer getWinnerTeamId() { return winnerTeamId; }
+    public Integer getChapter() { return chapter; }
+    public Integer getPart() { return part; }
+    public List<Press> getPresses() { return presses; }
+    
+    /**
+     * Нажатие в завершенном раунде
+     */
+    public static class Press {
+        private final String playerId;
+        private final Integer teamId;
+        private final int position;
+        private final long clientTimestamp;
+        private final long serverReceiveTime;
+        private final long reactionMs; // Время реакции относительно старта раунда (по часам сервера)
+        
+        public Press(String playerId, Integer teamId, int position, long clientTimestamp,
+                     long serverReceiveTime, long reactionMs) {
+            this.playerId = playerId;
+            this.teamId = teamId;
+            this.position = position;
+            this.clientTimestamp = clientTimestamp;
+            this.serverReceiveTime = serverReceiveTime;
+            this.reactionMs = reactionMs;
+        }
+        
+        public String getPlayerId() { return playerId; }
+        public Integer getTeamId() { return teamId; }
+        public int getPosition() { return position; }
+        public long getClientTimestamp() { return clientTimestamp; }
+        public long getServerReceiveTime() { return serverReceiveTime; }
+        public long getReactionMs() { return reactionMs; }
+    }
+}
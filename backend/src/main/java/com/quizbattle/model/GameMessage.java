@@ -1,5 +1,7 @@
 package com.quizbattle.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class GameMessage {
@@ -17,6 +19,8 @@ public class GameMessage {
     private String error;
     private Integer chapter; // Текущая глава викторины
     private Integer part; // Текущая часть главы
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String imageUrl; // URL картинки части с версией (только в сообщениях о главах)
     
     public GameMessage() {}
     
@@ -63,6 +67,9 @@ public class GameMessage {
     public Integer getPart() { return part; }
     public void setPart(Integer part) { this.part = part; }
     
+    public String getImageUrl() { return imageUrl; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+    
     // Factory methods
     public static GameMessage roomCreated(String roomCode) {
         GameMessage msg = new GameMessage();
@@ -180,12 +187,23 @@ public class GameMessage {
         return msg;
     }
     
-    public static GameMessage chapterUpdated(Room room) {
+    public static GameMessage chapterUpdated(Room room, String imageUrl) {
         GameMessage msg = new GameMessage();
         msg.setType(MessageType.CHAPTER_UPDATED);
         msg.setRoomCode(room.getCode());
         msg.setChapter(room.getCurrentChapter());
         msg.setPart(room.getCurrentPart());
+        msg.setImageUrl(imageUrl);
+        return msg;
+    }
+    
+    public static GameMessage chapterPrefetch(Room room, int chapter, int part, String imageUrl) {
+        GameMessage msg = new GameMessage();
+        msg.setType(MessageType.CHAPTER_PREFETCH);
+        msg.setRoomCode(room.getCode());
+        msg.setChapter(chapter);
+        msg.setPart(part);
+        msg.setImageUrl(imageUrl);
         return msg;
     }
 }
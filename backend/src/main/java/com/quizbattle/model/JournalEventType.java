@@ -0,0 +1,31 @@
+package com.quizbattle.model;
+
+/**
+ * Типы событий журнала раундов (код хранится в заголовке бинарной записи)
+ */
+public enum JournalEventType {
+    ROOM_OPENED(1),
+    ROUND_STARTED(2),
+    BUTTON_PRESSED(3),
+    WINNER_DETERMINED(4),
+    PLAYER_STUNNED(5),
+    CHAPTER_CHANGED(6),
+    ROUND_RESET(7);
+    
+    private final int code;
+    
+    JournalEventType(int code) {
+        this.code = code;
+    }
+    
+    public int getCode() { return code; }
+    
+    public static JournalEventType fromCode(int code) {
+        for (JournalEventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.quizbattle.model;
+
+/**
+ * Запись журнала раундов, прочитанная из файла (используется при воспроизведении и анализе)
+ */
+public class JournalRecord {
+    private final long sequence;
+    private final JournalEventType type;
+    private final String roomCode;
+    private final long roomVersion;
+    private final String playerId;
+    private final long clientTimestamp;
+    private final long serverTime;
+    private final int arg1; // позиция нажатия или номер главы
+    private final int arg2; // номер части главы
+    
+    public JournalRecord(long sequence, JournalEventType type, String roomCode, long roomVersion,
+                         String playerId, long clientTimestamp, long serverTime, int arg1, int arg2) {
+        this.sequence = sequence;
+        this.type = type;
+        this.roomCode = roomCode;
+        this.roomVersion = roomVersion;
+        this.playerId = playerId;
+        this.clientTimestamp = clientTimestamp;
+        this.serverTime = serverTime;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+    }
+    
+    public long getSequence() { return sequence; }
+    public JournalEventType getType() { return type; }
+    public String getRoomCode() { return roomCode; }
+    public long getRoomVersion() { return roomVersion; }
+    public String getPlayerId() { return playerId; }
+    public long getClientTimestamp() { return clientTimestamp; }
+    public long getServerTime() { return serverTime; }
+    public int getArg1() { return arg1; }
+    public int getArg2() { return arg2; }
+    
+    /**
+     * Применить событие к комнате (воспроизведение журнала после снимка, записи - в порядке версий).
+     * Нажатие игрока, уже записанное в комнате, не добавляется повторно, а версия комнаты
+     * не уменьшается: иначе новые изменения получили бы версии, уже занятые в журнале
+     */
+    public void applyTo(Room room) {
+        switch (type) {
+            case ROUND_STARTED -> {
+                room.startRound();
+                room.setRoundStartTime(serverTime);
+            }
+            case BUTTON_PRESSED -> {
+                boolean pressed = room.getButtonPresses().stream()
+                        .anyMatch(bp -> bp.getPlayerId().equals(playerId));
+                if (pressed) {
+                    break;
+                }
+                ButtonPress press = new ButtonPress(playerId, clientTimestamp, arg1);
+                press.setServerReceiveTime(serverTime);
+                room.getButtonPresses().add(press);
+                if (arg1 == 1) {
+                    room.setFirstPressServerTime(serverTime);
+                }
+            }
+            case WINNER_DETERMINED -> {
+                room.setWinnerId(playerId);
+                room.setGameState(GameState.ROUND_ENDED);
+            }
+            case PLAYER_STUNNED -> {
+                Player player = room.getPlayerById(playerId);
+                if (player != null) {
+                    player.setStunned(true);
+                }
+            }
+            case CHAPTER_CHANGED -> {
+                room.setCurrentChapter(arg1 != 0 ? arg1 : null);
+                room.setCurrentPart(arg2 != 0 ? arg2 : null);
+            }
+            case ROUND_RESET -> room.resetRound();
+            default -> { }
+        }
+        room.setStateVersion(Math.max(room.getStateVersion(), roomVersion));
+    }
+}
@@ -11,6 +11,7 @@ public enum MessageType {
     ROUND_RESET,
     ROOM_STATE,
     CHAPTER_UPDATED,
+    CHAPTER_PREFETCH, // Подсказка клиентам заранее загрузить картинку следующей части
     ERROR,
     
     // От клиента
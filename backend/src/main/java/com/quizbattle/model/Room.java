@@ -3,6 +3,7 @@ package com.quizbattle.model;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Room {
     private String code;
@@ -16,6 +17,9 @@ public class Room {
     private long firstPressServerTime; // Время получения первого нажатия на сервере
     private Integer currentChapter; // Текущая глава викторины
     private Integer currentPart; // Текущая часть главы
+    private final AtomicLong stateVersion = new AtomicLong(); // Версия состояния (растет при каждом изменении)
+    private boolean synthetic; // Служебная комната прогрева: без снимков, журнала и истории
+    private volatile long lastActivityAt = System.currentTimeMillis(); // Последнее обращение (для вытеснения простаивающих)
     
     public static final int MAX_PLAYERS = 20;
     private static final long MIN_BUFFER_WINDOW = 100; // Минимальное окно 100мс
@@ -75,6 +79,29 @@ public class Room {
     public Integer getCurrentPart() { return currentPart; }
     public void setCurrentPart(Integer currentPart) { this.currentPart = currentPart; }
     
+    public long getLastActivityAt() { return lastActivityAt; }
+    public void touch() { this.lastActivityAt = System.currentTimeMillis(); }
+    
+    public boolean isSynthetic() { return synthetic; }
+    public void setSynthetic(boolean synthetic) { this.synthetic = synthetic; }
+    
+    public long getStateVersion() { return stateVersion.get(); }
+    public void setStateVersion(long stateVersion) { this.stateVersion.set(stateVersion); }
+    
+    /**
+     * Увеличить версию состояния (вызывается после каждого изменения комнаты, под ее блокировкой).
+     * Изменения раунда (start, press, winner, reset, stun, chapter) увеличивают версию сами
+     * и возвращают ее: снимок, снятый под той же блокировкой, и журнал получают одну и ту же версию
+     */
+    public synchronized long nextStateVersion() {
+        return stateVersion.incrementAndGet();
+    }
+    
+    /**
+     * Нажатие кнопки и версия состояния, которую оно породило
+     */
+    public record Press(ButtonPress press, long version) {}
+    
     // Business methods
     public boolean addPlayer(Player player) {
         if (players.size() >= MAX_PLAYERS) {
@@ -102,7 +129,12 @@ public class Room {
                 .orElse(null);
     }
     
-    public void startRound() {
+    /**
+     * Начать раунд
+     *
+     * @return новая версия состояния
+     */
+    public synchronized long startRound() {
         this.gameState = GameState.ACTIVE;
         this.winnerId = null;
         this.roundStartTime = System.currentTimeMillis();
@@ -113,13 +145,19 @@ public class Room {
             this.winnerDeterminationTask.cancel(false);
         }
         this.winnerDeterminationTask = null;
+        return nextStateVersion();
     }
     
     public void endRound() {
         this.gameState = GameState.ROUND_ENDED;
     }
     
-    public void resetRound() {
+    /**
+     * Сбросить раунд
+     *
+     * @return новая версия состояния
+     */
+    public synchronized long resetRound() {
         this.gameState = GameState.WAITING;
         this.winnerId = null;
         this.roundStartTime = null;
@@ -134,19 +172,41 @@ public class Room {
             this.winnerDeterminationTask.cancel(false);
         }
         this.winnerDeterminationTask = null;
+        return nextStateVersion();
+    }
+    
+    /**
+     * Оглушить игрока до конца раунда
+     *
+     * @return новая версия состояния
+     */
+    public synchronized long stunPlayer(Player player) {
+        player.setStunned(true);
+        return nextStateVersion();
+    }
+    
+    /**
+     * Сменить текущую главу и часть викторины
+     *
+     * @return новая версия состояния
+     */
+    public synchronized long changeChapter(Integer chapter, Integer part) {
+        this.currentChapter = chapter;
+        this.currentPart = part;
+        return nextStateVersion();
     }
     
     /**
      * Регистрация нажатия кнопки с clientTimestamp
-     * Возвращает true, если это первое нажатие (для запуска таймера)
+     * Возвращает зарегистрированное нажатие с новой версией состояния или null, если нажатие отклонено
      */
-    public synchronized boolean registerButtonPress(String playerId, long clientTimestamp) {
+    public synchronized Press pressButton(String playerId, long clientTimestamp) {
         // Проверяем, не нажимал ли уже этот игрок
         boolean alreadyPressed = buttonPresses.stream()
                 .anyMatch(bp -> bp.getPlayerId().equals(playerId));
         
         if (alreadyPressed || gameState != GameState.ACTIVE) {
-            return false;
+            return null;
         }
         
         long serverReceiveTime = System.currentTimeMillis();
@@ -160,18 +220,19 @@ public class Room {
         // Если это первое нажатие, запоминаем время получения на сервере
         if (position == 1) {
             this.firstPressServerTime = serverReceiveTime;
-            return true; // Возвращаем true для запуска таймера
         }
         
-        return false;
+        return new Press(press, nextStateVersion());
     }
     
     /**
      * Определить победителя на основе clientTimestamp
+     *
+     * @return новая версия состояния
      */
-    public synchronized void determineWinner() {
+    public synchronized long determineWinner() {
         if (buttonPresses.isEmpty() || gameState != GameState.ACTIVE) {
-            return;
+            return nextStateVersion();
         }
         
         // Находим нажатие с минимальным clientTimestamp
@@ -183,6 +244,7 @@ public class Room {
             this.winnerId = winnerPress.getPlayerId();
             this.gameState = GameState.ROUND_ENDED;
         }
+        return nextStateVersion();
     }
     
     /**
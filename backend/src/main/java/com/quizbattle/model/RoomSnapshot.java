@@ -0,0 +1,118 @@
+package com.quizbattle.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Снимок состояния комнаты для сохранения в БД и восстановления после рестарта
+ */
+public class RoomSnapshot {
+    private String code;
+    private String hostSessionId;
+    private long version;
+    private GameState gameState;
+    private String winnerId;
+    private Long roundStartTime;
+    private long firstPressServerTime;
+    private Integer currentChapter;
+    private Integer currentPart;
+    private List<Player> players;
+    private List<ButtonPress> buttonPresses;
+
+    public RoomSnapshot() {}
+
+    /**
+     * Снять копию состояния комнаты (под блокировкой комнаты, чтобы не поймать раунд на середине)
+     */
+    public static RoomSnapshot of(Room room) {
+        synchronized (room) {
+            RoomSnapshot snapshot = new RoomSnapshot();
+            snapshot.code = room.getCode();
+            snapshot.hostSessionId = room.getHostSessionId();
+            snapshot.version = room.getStateVersion();
+            snapshot.gameState = room.getGameState();
+            snapshot.winnerId = room.getWinnerId();
+            snapshot.roundStartTime = room.getRoundStartTime();
+            snapshot.firstPressServerTime = room.getFirstPressServerTime();
+            snapshot.currentChapter = room.getCurrentChapter();
+            snapshot.currentPart = room.getCurrentPart();
+
+            snapshot.players = new ArrayList<>();
+            for (Player player : room.getPlayers()) {
+                Player copy = new Player(player.getId(), player.getName(), player.getAvatar(),
+                        player.getSessionId(), player.isConnected());
+                copy.setTeamId(player.getTeamId());
+                copy.setStunned(player.isStunned());
+                snapshot.players.add(copy);
+            }
+
+            snapshot.buttonPresses = new ArrayList<>();
+            for (ButtonPress press : room.getButtonPresses()) {
+                ButtonPress copy = new ButtonPress(press.getPlayerId(), press.getTimestamp(), press.getPosition());
+                copy.setServerReceiveTime(press.getServerReceiveTime());
+                snapshot.buttonPresses.add(copy);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Восстановить комнату из снимка. Сессии WebSocket после рестарта недействительны,
+     * поэтому все игроки считаются отключенными до повторного подключения
+     */
+    public Room toRoom() {
+        Room room = new Room(code, hostSessionId);
+        room.setStateVersion(version);
+        room.setGameState(gameState != null ? gameState : GameState.WAITING);
+        room.setWinnerId(winnerId);
+        room.setRoundStartTime(roundStartTime);
+        room.setFirstPressServerTime(firstPressServerTime);
+        room.setCurrentChapter(currentChapter);
+        room.setCurrentPart(currentPart);
+
+        if (players != null) {
+            for (Player player : players) {
+                player.setConnected(false);
+                room.addPlayer(player);
+            }
+        }
+        if (buttonPresses != null) {
+            room.getButtonPresses().addAll(buttonPresses);
+        }
+        return room;
+    }
+
+    // Getters and Setters
+    public String getCode() { return code; }
+    public void setCode(String code) { this.code = code; }
+
+    public String getHostSessionId() { return hostSessionId; }
+    public void setHostSessionId(String hostSessionId) { this.hostSessionId = hostSessionId; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public GameState getGameState() { return gameState; }
+    public void setGameState(GameState gameState) { this.gameState = gameState; }
+
+    public String getWinnerId() { return winnerId; }
+    public void setWinnerId(String winnerId) { this.winnerId = winnerId; }
+
+    public Long getRoundStartTime() { return roundStartTime; }
+    public void setRoundStartTime(Long roundStartTime) { this.roundStartTime = roundStartTime; }
+
+    public long getFirstPressServerTime() { return firstPressServerTime; }
+    public void setFirstPressServerTime(long firstPressServerTime) { this.firstPressServerTime = firstPressServerTime; }
+
+    public Integer getCurrentChapter() { return currentChapter; }
+    public void setCurrentChapter(Integer currentChapter) { this.currentChapter = currentChapter; }
+
+    public Integer getCurrentPart() { return currentPart; }
+    public void setCurrentPart(Integer currentPart) { this.currentPart = currentPart; }
+
+    public List<Player> getPlayers() { return players; }
+    public void setPlayers(List<Player> players) { this.players = players; }
+
+    public List<ButtonPress> getButtonPresses() { return buttonPresses; }
+    public void setButtonPresses(List<ButtonPress> buttonPresses) { this.buttonPresses = buttonPresses; }
+}
@@ -0,0 +1,125 @@
+package com.quizbattle.model.entity;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Нажатие кнопки в завершенном раунде (записывается пачками через JDBC в RoundHistoryWriter)
+ */
+@Entity
+@Table(name = "round_press_history")
+@IdClass(PressHistoryEntity.PressId.class)
+public class PressHistoryEntity {
+    
+    @Id
+    @Column(name = "round_id")
+    private UUID roundId;
+    
+    @Id
+    @Column(name = "position")
+    private int position;
+    
+    @Column(name = "player_id", nullable = false, length = 50)
+    private String playerId;
+    
+    @Column(name = "team_id")
+    private Integer teamId;
+    
+    @Column(name = "client_timestamp", nullable = false)
+    private long clientTimestamp;
+    
+    @Column(name = "server_receive_time", nullable = false)
+    private long serverReceiveTime;
+    
+    @Column(name = "reaction_ms", nullable = false)
+    private long reactionMs;
+    
+    // Constructors
+    public PressHistoryEntity() {}
+    
+    // Getters and Setters
+    public UUID getRoundId() {
+        return roundId;
+    }
+    
+    public void setRoundId(UUID roundId) {
+        this.roundId = roundId;
+    }
+    
+    public int getPosition() {
+        return position;
+    }
+    
+    public void setPosition(int position) {
+        this.position = position;
+    }
+    
+    public String getPlayerId() {
+        return playerId;
+    }
+    
+    public void setPlayerId(String playerId) {
+        this.playerId = playerId;
+    }
+    
+    public Integer getTeamId() {
+        return teamId;
+    }
+    
+    public void setTeamId(Integer teamId) {
+        this.teamId = teamId;
+    }
+    
+    public long getClientTimestamp() {
+        return clientTimestamp;
+    }
+    
+    public void setClientTimestamp(long clientTimestamp) {
+        this.clientTimestamp = clientTimestamp;
+    }
+    
+    public long getServerReceiveTime() {
+        return serverReceiveTime;
+    }
+    
+    public void setServerReceiveTime(long serverReceiveTime) {
+        this.serverReceiveTime = serverReceiveTime;
+    }
+    
+    public long getReactionMs() {
+        return reactionMs;
+    }
+    
+    public void setReactionMs(long reactionMs) {
+        this.reactionMs = reactionMs;
+    }
+    
+    /**
+     * Составной ключ нажатия: раунд + позиция
+     */
+    public static class PressId implements Serializable {
+        private UUID roundId;
+        private int position;
+        
+        public PressId() {}
+        
+        public PressId(UUID roundId, int position) {
+            this.roundId = roundId;
+            this.position = position;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PressId other)) return false;
+            return position == other.position && Objects.equals(roundId, other.roundId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(roundId, position);
+        }
+    }
+}
@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 public class RoomEntity {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rooms_seq")
+    @SequenceGenerator(name = "rooms_seq", sequenceName = "rooms_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false, length = 10)
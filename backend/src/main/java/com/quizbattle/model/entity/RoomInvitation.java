@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "room_invitations")
+@Table(name = "room_invitations", indexes = {
+    @Index(name = "idx_room_invitations_status_updated", columnList = "status, updated_at")
+})
 public class RoomInvitation {
     
     public enum InvitationStatus {
@@ -15,7 +17,8 @@ public class RoomInvitation {
     }
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "room_invitations_seq")
+    @SequenceGenerator(name = "room_invitations_seq", sequenceName = "room_invitations_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
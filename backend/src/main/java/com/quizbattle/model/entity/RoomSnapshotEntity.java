@@ -0,0 +1,58 @@
+package com.quizbattle.model.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "room_snapshots")
+public class RoomSnapshotEntity {
+    
+    @Id
+    @Column(length = 10)
+    private String code;
+    
+    @Column(nullable = false)
+    private long version;
+    
+    @Column(nullable = false, columnDefinition = "text")
+    private String state; // JSON снимок RoomSnapshot
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public RoomSnapshotEntity() {}
+    
+    // Getters and Setters
+    public String getCode() {
+        return code;
+    }
+    
+    public void setCode(String code) {
+        this.code = code;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public void setState(String state) {
+        this.state = state;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.quizbattle.model.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA-слушатель User и Team: публикует {@link RosterChangedEvent} при изменении пользователя
+ * или команды. Сервисы реагируют на событие сами (ростер сбрасывается после коммита),
+ * поэтому сущности не зависят от слоя сервисов
+ */
+public class RosterChangeListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Создается контейнером бинов Hibernate (SpringBeanContainer) вместе с EntityManagerFactory
+    public RosterChangeListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        eventPublisher.publishEvent(new RosterChangedEvent(entity));
+    }
+}
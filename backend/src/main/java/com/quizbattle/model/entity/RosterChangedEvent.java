@@ -0,0 +1,8 @@
+package com.quizbattle.model.entity;
+
+/**
+ * Изменился пользователь или команда (публикуется {@link RosterChangeListener})
+ *
+ * @param entity измененная сущность
+ */
+public record RosterChangedEvent(Object entity) {}
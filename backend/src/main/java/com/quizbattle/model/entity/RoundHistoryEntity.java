@@ -0,0 +1,118 @@
+package com.quizbattle.model.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Завершенный раунд (записывается пачками через JDBC в RoundHistoryWriter)
+ */
+@Entity
+@Table(name = "round_history", indexes = {
+    @Index(name = "idx_round_history_room_ended", columnList = "room_code, ended_at")
+})
+public class RoundHistoryEntity {
+    
+    @Id
+    private UUID id;
+    
+    @Column(name = "room_code", nullable = false, length = 10)
+    private String roomCode;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    @Column(name = "ended_at", nullable = false)
+    private LocalDateTime endedAt;
+    
+    @Column(name = "winner_player_id", length = 50)
+    private String winnerPlayerId;
+    
+    @Column(name = "winner_team_id")
+    private Integer winnerTeamId;
+    
+    @Column(name = "chapter")
+    private Integer chapter;
+    
+    @Column(name = "part")
+    private Integer part;
+    
+    @Column(name = "press_count", nullable = false)
+    private int pressCount;
+    
+    // Constructors
+    public RoundHistoryEntity() {}
+    
+    // Getters and Setters
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public String getRoomCode() {
+        return roomCode;
+    }
+    
+    public void setRoomCode(String roomCode) {
+        this.roomCode = roomCode;
+    }
+    
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public LocalDateTime getEndedAt() {
+        return endedAt;
+    }
+    
+    public void setEndedAt(LocalDateTime endedAt) {
+        this.endedAt = endedAt;
+    }
+    
+    public String getWinnerPlayerId() {
+        return winnerPlayerId;
+    }
+    
+    public void setWinnerPlayerId(String winnerPlayerId) {
+        this.winnerPlayerId = winnerPlayerId;
+    }
+    
+    public Integer getWinnerTeamId() {
+        return winnerTeamId;
+    }
+    
+    public void setWinnerTeamId(Integer winnerTeamId) {
+        this.winnerTeamId = winnerTeamId;
+    }
+    
+    public Integer getChapter() {
+        return chapter;
+    }
+    
+    public void setChapter(Integer chapter) {
+        this.chapter = chapter;
+    }
+    
+    public Integer getPart() {
+        return part;
+    }
+    
+    public void setPart(Integer part) {
+        this.part = part;
+    }
+    
+    public int getPressCount() {
+        return pressCount;
+    }
+    
+    public void setPressCount(int pressCount) {
+        this.pressCount = pressCount;
+    }
+}
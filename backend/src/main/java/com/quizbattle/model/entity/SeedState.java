@@ -0,0 +1,56 @@
+package com.quizbattle.model.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Отпечаток последнего примененного набора начальных данных (см. DataLoader)
+ */
+@Entity
+@Table(name = "seed_state")
+public class SeedState {
+    
+    @Id
+    @Column(length = 50)
+    private String name;
+    
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+    
+    @Column(name = "applied_at", nullable = false)
+    private LocalDateTime appliedAt;
+    
+    // Constructors
+    public SeedState() {}
+    
+    public SeedState(String name, String fingerprint) {
+        this.name = name;
+        this.fingerprint = fingerprint;
+        this.appliedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getFingerprint() {
+        return fingerprint;
+    }
+    
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+    
+    public LocalDateTime getAppliedAt() {
+        return appliedAt;
+    }
+    
+    public void setAppliedAt(LocalDateTime appliedAt) {
+        this.appliedAt = appliedAt;
+    }
+}
@@ -1,17 +1,27 @@
 package com.quizbattle.model.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import java.time.LocalDateTime;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@EntityListeners(RosterChangeListener.class)
 @Table(name = "teams")
 public class Team {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "teams_seq")
+    @SequenceGenerator(name = "teams_seq", sequenceName = "teams_seq", allocationSize = 50)
     private Long id;
     
-    @Column(nullable = false, length = 100)
+    @NaturalId(mutable = true)
+    @Column(nullable = false, length = 100, unique = true)
     private String name;
     
     @Column(name = "background_image", length = 500)
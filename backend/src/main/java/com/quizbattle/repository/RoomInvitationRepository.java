@@ -1,9 +1,13 @@
 package com.quizbattle.repository;
 
+import com.quizbattle.dto.InvitationResponse;
 import com.quizbattle.model.entity.RoomEntity;
 import com.quizbattle.model.entity.RoomInvitation;
 import com.quizbattle.model.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,5 +19,26 @@ public interface RoomInvitationRepository extends JpaRepository<RoomInvitation,
     List<RoomInvitation> findByRoomAndStatus(RoomEntity room, RoomInvitation.InvitationStatus status);
     Optional<RoomInvitation> findByRoomAndInvitedUser(RoomEntity room, User invitedUser);
     List<RoomInvitation> findByRoom(RoomEntity room);
+    
+    /**
+     * Страница приглашений пользователя (keyset по id) сразу в виде DTO
+     */
+    @Query("SELECT new com.quizbattle.dto.InvitationResponse(i.id, r.code, u.id, u.username, u.fullName, " +
+           "u.nickname, u.avatar, i.status, i.createdAt) " +
+           "FROM RoomInvitation i JOIN i.room r JOIN i.invitedUser u " +
+           "WHERE u.id = :userId AND i.status = :status AND i.id > :afterId ORDER BY i.id")
+    List<InvitationResponse> findPageByInvitedUserId(@Param("userId") Long userId,
+                                                     @Param("status") RoomInvitation.InvitationStatus status,
+                                                     @Param("afterId") Long afterId,
+                                                     Pageable pageable);
+    
+    /**
+     * Все приглашения комнаты сразу в виде DTO
+     */
+    @Query("SELECT new com.quizbattle.dto.InvitationResponse(i.id, r.code, u.id, u.username, u.fullName, " +
+           "u.nickname, u.avatar, i.status, i.createdAt) " +
+           "FROM RoomInvitation i JOIN i.room r JOIN i.invitedUser u " +
+           "WHERE r.code = :roomCode ORDER BY i.id")
+    List<InvitationResponse> findResponsesByRoomCode(@Param("roomCode") String roomCode);
 }
 
@@ -3,6 +3,7 @@ package com.quizbattle.repository;
 import com.quizbattle.model.entity.RoomEntity;
 import com.quizbattle.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,5 +14,9 @@ public interface RoomRepository extends JpaRepository<RoomEntity, Long> {
     Optional<RoomEntity> findByCode(String code);
     List<RoomEntity> findByHostUser(User hostUser);
     boolean existsByCode(String code);
+
+    // Код и id ведущего всех комнат по времени создания (индекс кодов в памяти, RoomRecords)
+    @Query("SELECT r.code, r.hostUser.id FROM RoomEntity r ORDER BY r.createdAt, r.id")
+    List<Object[]> findCodesAndHosts();
 }
 
@@ -0,0 +1,9 @@
+package com.quizbattle.repository;
+
+import com.quizbattle.model.entity.RoomSnapshotEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RoomSnapshotRepository extends JpaRepository<RoomSnapshotEntity, String> {
+}
@@ -0,0 +1,9 @@
+package com.quizbattle.repository;
+
+import com.quizbattle.model.entity.SeedState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SeedStateRepository extends JpaRepository<SeedState, String> {
+}
@@ -4,11 +4,8 @@ import com.quizbattle.model.entity.Team;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
-
 @Repository
-public interface TeamRepository extends JpaRepository<Team, Long> {
-    Optional<Team> findByName(String name);
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamRepositoryCustom {
     boolean existsByName(String name);
 }
 
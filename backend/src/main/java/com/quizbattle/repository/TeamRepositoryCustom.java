@@ -0,0 +1,12 @@
+package com.quizbattle.repository;
+
+import com.quizbattle.model.entity.Team;
+
+import java.util.Optional;
+
+/**
+ * Поиск команды по natural id (названию) через кэш второго уровня Hibernate
+ */
+public interface TeamRepositoryCustom {
+    Optional<Team> findByName(String name);
+}
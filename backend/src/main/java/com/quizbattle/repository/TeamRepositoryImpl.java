@@ -0,0 +1,23 @@
+package com.quizbattle.repository;
+
+import com.quizbattle.model.entity.Team;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Team> findByName(String name) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Team.class)
+                .loadOptional(name);
+    }
+}
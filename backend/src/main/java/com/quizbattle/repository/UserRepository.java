@@ -1,19 +1,33 @@
 package com.quizbattle.repository;
 
+import com.quizbattle.dto.UserResponse;
 import com.quizbattle.model.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     boolean existsByUsername(String username);
     
+    List<User> findByUsernameIn(Collection<String> usernames);
+    
+    /**
+     * Проставить роль PLAYER пользователям без роли (одним запросом)
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.role = com.quizbattle.model.entity.UserRole.PLAYER WHERE u.role IS NULL")
+    int assignDefaultRoles();
+    
     @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.team")
     List<User> findAllWithTeams();
+    
+    @Query("SELECT new com.quizbattle.dto.UserResponse(u.id, u.username, u.fullName, u.nickname, u.avatar, u.role, t.id) " +
+           "FROM User u LEFT JOIN u.team t ORDER BY u.id")
+    List<UserResponse> findAllResponses();
 }
 
@@ -0,0 +1,12 @@
+package com.quizbattle.repository;
+
+import com.quizbattle.model.entity.User;
+
+import java.util.Optional;
+
+/**
+ * Поиск пользователя по natural id (username) через кэш второго уровня Hibernate
+ */
+public interface UserRepositoryCustom {
+    Optional<User> findByUsername(String username);
+}
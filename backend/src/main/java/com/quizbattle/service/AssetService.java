@@ -0,0 +1,258 @@
+package com.quizbattle.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Статические изображения (аватары, картинки глав).
+ * Сначала ищутся во внешнем каталоге quizbattle.assets.dir (подкаталоги avatars и chapters,
+ * изменения подхватываются без перезапуска), затем в classpath. Файл из JAR читается один раз
+ * при первом запросе; вместе с содержимым хранится хэш, который служит строгим ETag и версией
+ * для URL вида /api/chapters/1-1.jpg?v=хэш. Отсутствующие файлы не кешируются
+ */
+@Service
+public class AssetService {
+
+    private static final Logger log = LoggerFactory.getLogger(AssetService.class);
+
+    public static final String AVATARS = "avatars";
+    public static final String CHAPTERS = "chapters";
+
+    private static final Set<String> DIRECTORIES = Set.of(AVATARS, CHAPTERS);
+
+    // Файлы из classpath (запасной вариант, если во внешнем каталоге файла нет)
+    private final Map<String, Asset> classpathAssets = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> classpathFilenames = new ConcurrentHashMap<>();
+    private final ExternalAssetDirectory externalDirectory; // null, если внешний каталог не задан
+
+    public AssetService(@Value("${quizbattle.assets.dir:}") String externalDir,
+                        @Value("${quizbattle.assets.file-threshold:48KB}") DataSize fileThreshold) {
+        this.externalDirectory = externalDir.isBlank() ? null
+                : new ExternalAssetDirectory(Path.of(externalDir), DIRECTORIES, fileThreshold.toBytes());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (externalDirectory != null) {
+            try {
+                externalDirectory.start();
+            } catch (IOException e) {
+                log.warn("External asset directory unavailable, serving classpath assets only: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (externalDirectory != null) {
+            externalDirectory.close();
+        }
+    }
+
+    /**
+     * Файл из каталога ресурсов (avatars или chapters)
+     */
+    public Optional<Asset> getAsset(String directory, String filename) {
+        if (!DIRECTORIES.contains(directory) || !isPlainFilename(filename)) {
+            return Optional.empty();
+        }
+        if (externalDirectory != null) {
+            Optional<Asset> external = externalDirectory.get(directory, filename);
+            if (external.isPresent()) {
+                return external;
+            }
+        }
+        String path = directory + "/" + filename;
+        Asset asset = classpathAssets.get(path);
+        if (asset == null) {
+            asset = load(path, filename);
+            if (asset == null) {
+                return Optional.empty();
+            }
+            Asset existing = classpathAssets.putIfAbsent(path, asset);
+            if (existing != null) {
+                asset = existing;
+            }
+        }
+        return Optional.of(asset);
+    }
+
+    /**
+     * Имена файлов каталога ресурсов: из внешнего каталога и из classpath (по алфавиту)
+     */
+    public SortedSet<String> getFilenames(String directory) {
+        SortedSet<String> filenames = new TreeSet<>(classpathFilenames.computeIfAbsent(directory, AssetService::listClasspath));
+        if (externalDirectory != null) {
+            filenames.addAll(externalDirectory.filenames(directory));
+        }
+        return filenames;
+    }
+
+    /**
+     * Счетчик изменений внешнего каталога: по нему зависимые кеши понимают, что пора перестроиться
+     */
+    public long getGeneration() {
+        return externalDirectory != null ? externalDirectory.generation() : 0;
+    }
+
+    private static Set<String> listClasspath(String directory) {
+        Set<String> filenames = new TreeSet<>();
+        try {
+            // PathMatchingResourcePatternResolver работает и с ресурсами внутри JAR
+            for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:" + directory + "/*")) {
+                String filename = resource.getFilename();
+                if (resource.isReadable() && isPlainFilename(filename)) {
+                    filenames.add(filename);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("No classpath assets in {}: {}", directory, e.getMessage());
+        }
+        return Collections.unmodifiableSet(filenames);
+    }
+
+    /**
+     * URL файла с версией по содержимому (такой URL можно кешировать навсегда)
+     */
+    public Optional<String> getVersionedUrl(String urlPrefix, String directory, String filename) {
+        return getAsset(directory, filename)
+                .map(asset -> urlPrefix + "/" + filename + "?v=" + asset.getVersion());
+    }
+
+    private Asset load(String path, String filename) {
+        Resource resource = new ClassPathResource(path);
+        if (!resource.exists() || !resource.isReadable()) {
+            return null;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            byte[] bytes = StreamUtils.copyToByteArray(in);
+            return Asset.inMemory(filename, bytes, hash(bytes));
+        } catch (IOException e) {
+            log.warn("Failed to read asset {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Только имя файла: без путей и переходов в родительский каталог
+     */
+    static boolean isPlainFilename(String filename) {
+        return filename != null && !filename.isEmpty()
+                && filename.indexOf('/') < 0 && filename.indexOf('\\') < 0 && !filename.contains("..");
+    }
+
+    static String hash(byte[] bytes) {
+        MessageDigest digest = newDigest();
+        digest.update(bytes);
+        return version(digest);
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String version(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest(), 0, 12);
+    }
+
+    /**
+     * Закешированный файл: содержимое в памяти или неизменяемый файл на диске, тип и версия (хэш содержимого)
+     */
+    public static class Asset {
+        private final String filename;
+        private final byte[] bytes;
+        private final Path file;
+        private final long length;
+        private final MediaType contentType;
+        private final String version;
+
+        private Asset(String filename, byte[] bytes, Path file, long length, MediaType contentType, String version) {
+            this.filename = filename;
+            this.bytes = bytes;
+            this.file = file;
+            this.length = length;
+            this.contentType = contentType;
+            this.version = version;
+        }
+
+        static Asset inMemory(String filename, byte[] bytes, String version) {
+            return new Asset(filename, bytes, null, bytes.length, contentTypeOf(filename), version);
+        }
+
+        static Asset fileBacked(String filename, Path file, long length, String version) {
+            return new Asset(filename, null, file, length, contentTypeOf(filename), version);
+        }
+
+        private static MediaType contentTypeOf(String filename) {
+            return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        /**
+         * Содержимое в памяти (null для файла на диске)
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Файл на диске (null для содержимого в памяти). Файл не меняется: новая версия
+         * ассета получает новый файл, поэтому идущие загрузки дочитывают старый
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        public boolean isFileBacked() {
+            return file != null;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public MediaType getContentType() {
+            return contentType;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getETag() {
+            return "\"" + version + "\"";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.quizbattle.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Каталог глав: названия и картинки частей в виде версионированного манифеста.
+ *
+ * Картинки {глава}-{часть}.jpg индексируются при старте и заново после изменений во внешнем
+ * каталоге ресурсов. Названия берутся из chapters/names.properties. Версия манифеста - хэш
+ * названий и версий всех картинок, поэтому клиент может кешировать манифест по ETag
+ */
+@Service
+public class ChapterCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChapterCatalogService.class);
+
+    public static final String URL_PREFIX = "/api/chapters";
+
+    private static final String NAMES_FILE = "names.properties";
+    private static final Pattern PART_IMAGE = Pattern.compile("(\\d{1,4})-(\\d{1,4})\\.(jpe?g|png|webp)", Pattern.CASE_INSENSITIVE);
+
+    private final AssetService assetService;
+
+    private volatile Manifest manifest;
+
+    public ChapterCatalogService(AssetService assetService) {
+        this.assetService = assetService;
+    }
+
+    @PostConstruct
+    public void start() {
+        Manifest built = getManifest();
+        int parts = built.getChapters().stream().mapToInt(chapter -> chapter.getParts().size()).sum();
+        log.info("Chapter catalog indexed: {} chapters, {} images, version {}",
+                built.getChapters().size(), parts, built.getVersion());
+    }
+
+    /**
+     * Текущий манифест (перестраивается, если внешний каталог ресурсов изменился)
+     */
+    public Manifest getManifest() {
+        long generation = assetService.getGeneration();
+        Manifest current = manifest;
+        if (current == null || current.generation != generation) {
+            current = build(generation);
+            manifest = current;
+        }
+        return current;
+    }
+
+    /**
+     * Названия глав по номерам
+     */
+    public Map<Integer, String> getNames() {
+        return getManifest().names;
+    }
+
+    /**
+     * Картинка части главы
+     */
+    public Optional<Part> getPart(int chapter, int part) {
+        return getManifest().getChapters().stream()
+                .filter(entry -> entry.getChapter() == chapter)
+                .flatMap(entry -> entry.getParts().stream())
+                .filter(entry -> entry.getPart() == part)
+                .findFirst();
+    }
+
+    /**
+     * Часть, которую ведущий скорее всего покажет следующей: следующая часть той же главы,
+     * а после последней части - первая часть следующей главы с картинками
+     */
+    public Optional<Part> getNextPart(int chapter, int part) {
+        for (Chapter entry : getManifest().getChapters()) {
+            if (entry.getChapter() < chapter) {
+                continue;
+            }
+            for (Part candidate : entry.getParts()) {
+                if (entry.getChapter() > chapter || candidate.getPart() > part) {
+                    return Optional.of(candidate);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Manifest build(long generation) {
+        Map<Integer, String> names = loadNames();
+        Map<Integer, List<Part>> parts = new TreeMap<>();
+        for (String filename : assetService.getFilenames(AssetService.CHAPTERS)) {
+            Matcher matcher = PART_IMAGE.matcher(filename);
+            if (!matcher.matches()) {
+                continue;
+            }
+            int chapter = Integer.parseInt(matcher.group(1));
+            int part = Integer.parseInt(matcher.group(2));
+            assetService.getAsset(AssetService.CHAPTERS, filename).ifPresent(asset ->
+                    parts.computeIfAbsent(chapter, c -> new ArrayList<>()).add(new Part(chapter, part, filename,
+                            URL_PREFIX + "/" + filename + "?v=" + asset.getVersion(),
+                            asset.getVersion(), asset.getLength())));
+        }
+
+        // Главы с названием, но без картинок, тоже попадают в манифест (для выбора у ведущего)
+        TreeMap<Integer, Chapter> chapters = new TreeMap<>();
+        names.keySet().forEach(chapter -> chapters.put(chapter, null));
+        parts.keySet().forEach(chapter -> chapters.put(chapter, null));
+        MessageDigest digest = AssetService.newDigest();
+        for (Integer chapter : chapters.keySet()) {
+            List<Part> chapterParts = parts.getOrDefault(chapter, new ArrayList<>());
+            chapterParts.sort((a, b) -> Integer.compare(a.getPart(), b.getPart()));
+            String name = names.get(chapter);
+            chapters.put(chapter, new Chapter(chapter, name, Collections.unmodifiableList(chapterParts)));
+            digest.update((chapter + "=" + name + "\n").getBytes(StandardCharsets.UTF_8));
+            for (Part part : chapterParts) {
+                digest.update((part.getFilename() + ":" + part.getVersion() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return new Manifest(generation, AssetService.version(digest),
+                List.copyOf(chapters.values()), Collections.unmodifiableMap(names));
+    }
+
+    private Map<Integer, String> loadNames() {
+        Map<Integer, String> names = new TreeMap<>();
+        Optional<AssetService.Asset> asset = assetService.getAsset(AssetService.CHAPTERS, NAMES_FILE);
+        if (asset.isEmpty()) {
+            return names;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = asset.get().isFileBacked()
+                ? Files.newInputStream(asset.get().getFile())
+                : new ByteArrayInputStream(asset.get().getBytes());
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            log.warn("Failed to read chapter names: {}", e.getMessage());
+            return names;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                names.put(Integer.parseInt(key.trim()), properties.getProperty(key).trim());
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring chapter name with non-numeric key '{}'", key);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Манифест каталога: версия и главы по возрастанию номера
+     */
+    public static class Manifest {
+        private final long generation;
+        private final String version;
+        private final List<Chapter> chapters;
+        private final Map<Integer, String> names;
+
+        private Manifest(long generation, String version, List<Chapter> chapters, Map<Integer, String> names) {
+            this.generation = generation;
+            this.version = version;
+            this.chapters = chapters;
+            this.names = names;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public List<Chapter> getChapters() {
+            return chapters;
+        }
+    }
+
+    public static class Chapter {
+        private final int chapter;
+        private final String name; // null, если название не задано
+        private final List<Part> parts;
+
+        private Chapter(int chapter, String name, List<Part> parts) {
+            this.chapter = chapter;
+            this.name = name;
+            this.parts = parts;
+        }
+
+        public int getChapter() {
+            return chapter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Part> getParts() {
+            return parts;
+        }
+    }
+
+    /**
+     * Картинка части: URL с версией (кешируется навсегда), хэш содержимого и размер в байтах
+     */
+    public static class Part {
+        private final int chapter;
+        private final int part;
+        private final String filename;
+        private final String url;
+        private final String version;
+        private final long size;
+
+        private Part(int chapter, int part, String filename, String url, String version, long size) {
+            this.chapter = chapter;
+            this.part = part;
+            this.filename = filename;
+            this.url = url;
+            this.version = version;
+            this.size = size;
+        }
+
+        public int getChapter() {
+            return chapter;
+        }
+
+        public int getPart() {
+            return part;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
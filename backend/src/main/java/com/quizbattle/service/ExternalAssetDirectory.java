@@ -0,0 +1,267 @@
+package com.quizbattle.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Внешний каталог ассетов с подкаталогами avatars и chapters, изменения подхватываются WatchService.
+ *
+ * Небольшие файлы держатся в памяти. Крупные копируются в служебный каталог под именем
+ * с хэшем содержимого и отдаются с диска (sendfile или отображение в память), поэтому
+ * исходный файл можно перезаписывать на месте. Новая версия заменяет запись в карте атомарно;
+ * файл старой версии удаляется с задержкой, и уже начатые загрузки дочитывают его до конца.
+ * Если за это время содержимое вернулось к старой версии, удаление ее файла отменяется
+ */
+class ExternalAssetDirectory implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ExternalAssetDirectory.class);
+
+    private static final long RELOAD_DEBOUNCE_MS = 500; // Пауза после последнего события (файл мог еще дописываться)
+    private static final long RETIRED_FILE_GRACE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Path root;
+    private final Set<String> directories;
+    private final long fileThreshold;
+
+    private final Map<String, AssetService.Asset> assets = new ConcurrentHashMap<>();
+    private final Map<WatchKey, String> watchedDirectories = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> pendingReloads = new ConcurrentHashMap<>();
+    // Отложенные удаления файлов замененных версий. Перезагрузки и удаления выполняются
+    // в одном потоке asset-reloader, поэтому отмена не гонится с самим удалением
+    private final Map<Path, ScheduledFuture<?>> retiredFiles = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong(); // Растет при каждом изменении набора файлов
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "asset-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path cacheDir;
+    private WatchService watchService;
+    private Thread watcher;
+
+    ExternalAssetDirectory(Path root, Set<String> directories, long fileThreshold) {
+        this.root = root.toAbsolutePath().normalize();
+        this.directories = directories;
+        this.fileThreshold = fileThreshold;
+    }
+
+    void start() throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException(root + " is not a directory");
+        }
+        cacheDir = Files.createTempDirectory("quizbattle-assets");
+        watchService = root.getFileSystem().newWatchService();
+        for (String directory : directories) {
+            Path path = root.resolve(directory);
+            if (Files.isDirectory(path)) {
+                WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, directory);
+                rescan(directory);
+            }
+        }
+        watcher = new Thread(this::watch, "asset-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Serving external assets from {} ({} files)", root, assets.size());
+    }
+
+    Optional<AssetService.Asset> get(String directory, String filename) {
+        return Optional.ofNullable(assets.get(directory + "/" + filename));
+    }
+
+    Set<String> filenames(String directory) {
+        String prefix = directory + "/";
+        return assets.keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .map(key -> key.substring(prefix.length()))
+                .collect(Collectors.toSet());
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                String directory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (directory == null) {
+                        continue;
+                    }
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        executor.execute(() -> rescan(directory));
+                    } else {
+                        scheduleReload(directory, event.context().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                    log.warn("External asset directory {} is no longer watched", directory);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Остановка
+        }
+    }
+
+    private void scheduleReload(String directory, String filename) {
+        String key = directory + "/" + filename;
+        pendingReloads.compute(key, (k, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return executor.schedule(() -> {
+                pendingReloads.remove(k);
+                reload(directory, filename);
+            }, RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void rescan(String directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root.resolve(directory))) {
+            for (Path file : files) {
+                reload(directory, file.getFileName().toString());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan external asset directory {}: {}", directory, e.getMessage());
+        }
+        // Файлы, удаленные без события (переполнение очереди WatchService)
+        String prefix = directory + "/";
+        assets.keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .filter(key -> !Files.exists(root.resolve(key)))
+                .toList()
+                .forEach(key -> reload(directory, key.substring(prefix.length())));
+    }
+
+    private void reload(String directory, String filename) {
+        if (!AssetService.isPlainFilename(filename) || filename.startsWith(".")) {
+            return; // Служебные и временные файлы редакторов
+        }
+        String key = directory + "/" + filename;
+        Path source = root.resolve(directory).resolve(filename);
+        try {
+            if (!Files.isRegularFile(source)) {
+                AssetService.Asset removed = assets.remove(key);
+                if (removed != null) {
+                    generation.incrementAndGet();
+                    retire(removed, null);
+                    log.info("External asset {} removed, falling back to classpath", key);
+                }
+                return;
+            }
+            AssetService.Asset asset = load(filename, source);
+            AssetService.Asset previous = assets.put(key, asset);
+            generation.incrementAndGet();
+            if (previous != null) {
+                retire(previous, asset);
+            }
+            log.info("External asset {} loaded: {} bytes, version {}{}", key, asset.getLength(), asset.getVersion(),
+                    asset.isFileBacked() ? ", served from disk" : "");
+        } catch (IOException e) {
+            log.warn("Failed to load external asset {}: {}", key, e.getMessage());
+        }
+    }
+
+    private AssetService.Asset load(String filename, Path source) throws IOException {
+        if (Files.size(source) < fileThreshold) {
+            byte[] bytes = Files.readAllBytes(source);
+            return AssetService.Asset.inMemory(filename, bytes, AssetService.hash(bytes));
+        }
+        // Копия с подсчетом хэша, затем переименование в неизменяемый файл <хэш>-<имя>
+        Path temp = Files.createTempFile(cacheDir, "copy", ".tmp");
+        MessageDigest digest = AssetService.newDigest();
+        long length;
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+            length = in.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        String version = AssetService.version(digest);
+        Path file = cacheDir.resolve(version + "-" + filename);
+        ScheduledFuture<?> retirement = retiredFiles.remove(file);
+        if (retirement != null) {
+            retirement.cancel(false); // Версия снова актуальна
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return AssetService.Asset.fileBacked(filename, file, length, version);
+    }
+
+    /**
+     * Удалить файл замененной версии после паузы (загрузки, начатые до замены, успевают его открыть)
+     */
+    private void retire(AssetService.Asset previous, AssetService.Asset replacement) {
+        if (!previous.isFileBacked() || (replacement != null && previous.getFile().equals(replacement.getFile()))) {
+            return;
+        }
+        retiredFiles.compute(previous.getFile(), (file, earlier) -> {
+            if (earlier != null) {
+                earlier.cancel(false);
+            }
+            return executor.schedule(() -> {
+                retiredFiles.remove(file);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.debug("Failed to delete retired asset file {}: {}", file, e.getMessage());
+                }
+            }, RETIRED_FILE_GRACE_MS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.debug("Failed to close asset watch service: {}", e.getMessage());
+        }
+        executor.shutdownNow();
+        if (cacheDir != null) {
+            try (Stream<Path> files = Files.walk(cacheDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            } catch (IOException e) {
+                log.debug("Failed to clean asset cache {}: {}", cacheDir, e.getMessage());
+            }
+        }
+    }
+}
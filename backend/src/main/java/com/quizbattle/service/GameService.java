@@ -1,19 +1,16 @@
 package com.quizbattle.service;
 
+import com.quizbattle.dto.UserResponse;
 import com.quizbattle.model.*;
-import com.quizbattle.model.entity.RoomEntity;
-import com.quizbattle.model.entity.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -23,14 +20,37 @@ public class GameService {
     
     private static final Logger log = LoggerFactory.getLogger(GameService.class);
     
-    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
     private final SecureRandom random = new SecureRandom();
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(10);
     private final UserService userService;
+    private final RoomStore rooms;
+    private final RoomSnapshotStore snapshotStore;
+    private final RoundJournal journal;
+    private final RoundHistoryWriter historyWriter;
+    private final RoundStatsService statsService;
+    private final RoomStateWaiters stateWaiters;
+    private final RoomRecords roomRecords;
+    private final RosterService rosterService;
     private SimpMessagingTemplate messagingTemplate;
     
-    public GameService(UserService userService) {
+    public GameService(UserService userService,
+                       RoomStore rooms,
+                       RoomSnapshotStore snapshotStore,
+                       RoundJournal journal,
+                       RoundHistoryWriter historyWriter,
+                       RoundStatsService statsService,
+                       RoomStateWaiters stateWaiters,
+                       RoomRecords roomRecords,
+                       RosterService rosterService) {
         this.userService = userService;
+        this.rooms = rooms;
+        this.snapshotStore = snapshotStore;
+        this.journal = journal;
+        this.historyWriter = historyWriter;
+        this.statsService = statsService;
+        this.stateWaiters = stateWaiters;
+        this.roomRecords = roomRecords;
+        this.rosterService = rosterService;
     }
     
     // Инжектим через setter, чтобы избежать циклической зависимости
@@ -47,17 +67,22 @@ public class GameService {
     
     /**
      * Создать новую комнату или вернуть существующую (сохраняет в БД и создает игровую сессию)
-     * Автоматически загружает всех пользователей из БД как игроков
+     * Автоматически загружает всех пользователей из ростера как игроков
      * Только администратор может создавать комнаты
      * При переподключении админа возвращает его существующую комнату (если forceNew = false)
      * 
+     * Комната создается в памяти по ростеру и индексу кодов комнат (RoomRecords), без обращения к БД.
+     * RoomEntity вставляется асинхронно; если вставка не удалась, ведущий получает ERROR в /queue/personal
+     * 
      * @param hostUserId ID администратора
      * @param hostSessionId ID сессии WebSocket
      * @param forceNew если true, всегда создает новую комнату, игнорируя существующую
      */
-    @Transactional
     public Room createRoom(Long hostUserId, String hostSessionId, boolean forceNew) {
-        User hostUser = userService.getUserById(hostUserId)
+        List<UserResponse> users = rosterService.getRoster().getUsers();
+        UserResponse hostUser = users.stream()
+                .filter(user -> user.getId().equals(hostUserId))
+                .findFirst()
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
         
         // Проверяем, что пользователь является администратором
@@ -67,25 +92,26 @@ public class GameService {
         
         // Если forceNew = false, проверяем существующую комнату
         if (!forceNew) {
-            Optional<RoomEntity> existingRoomEntity = userService.getLatestRoomByHostUserId(hostUserId);
+            Optional<String> existingCode = roomRecords.getLatestRoomCode(hostUserId);
             
-            if (existingRoomEntity.isPresent()) {
-                RoomEntity roomEntity = existingRoomEntity.get();
-                String code = roomEntity.getCode();
+            if (existingCode.isPresent()) {
+                String code = existingCode.get();
                 
-                // Проверяем, активна ли комната в памяти
-                Room existingRoom = rooms.get(code.toUpperCase());
+                // Проверяем, активна ли комната в памяти (или сохранена в снимке)
+                Room existingRoom = getRoom(code);
                 
                 if (existingRoom != null) {
                     // Комната уже активна - просто обновляем hostSessionId
                     existingRoom.setHostSessionId(hostSessionId);
+                    roomChanged(existingRoom);
                     log.info("Reconnected to existing room: {} by userId: {}, session: {}", code, hostUserId, hostSessionId);
                     return existingRoom;
                 } else {
                     // Комната есть в БД, но не активна в памяти - активируем её
                     Room room = new Room(code, hostSessionId);
-                    loadAllUsersAsPlayers(room);
-                    rooms.put(code.toUpperCase(), room);
+                    addPlayers(room, users);
+                    rooms.put(room);
+                    roomOpened(room);
                     log.info("Reactivated room from database: {} by userId: {}, session: {}", code, hostUserId, hostSessionId);
                     return room;
                 }
@@ -93,19 +119,23 @@ public class GameService {
         }
         
         // Комнаты нет или forceNew = true - создаем новую
-        String code = generateRoomCode();
-        
-        // Создаем RoomEntity и сохраняем в БД
-        RoomEntity roomEntity = new RoomEntity(code, hostUser);
-        userService.saveRoom(roomEntity);
+        String code = generateRoomCode(true);
         
         // Создаем Room для игровой сессии
         Room room = new Room(code, hostSessionId);
         
-        // Автоматически загружаем всех пользователей из БД как игроков (кроме админа)
-        loadAllUsersAsPlayers(room);
+        // Автоматически загружаем всех пользователей из ростера как игроков (кроме админа)
+        addPlayers(room, users);
+        
+        rooms.put(room);
+        roomOpened(room);
         
-        rooms.put(code, room);
+        // RoomEntity сохраняется в фоне; ответ ведущему его не ждет
+        roomRecords.persist(code, hostUserId).whenComplete((ignored, error) -> {
+            if (error != null) {
+                roomNotPersisted(room, error);
+            }
+        });
         log.info("Created new room: {} by userId: {}, session: {}, forceNew: {}", code, hostUserId, hostSessionId, forceNew);
         return room;
     }
@@ -113,22 +143,36 @@ public class GameService {
     /**
      * Создать новую комнату или вернуть существующую (без forceNew, для обратной совместимости)
      */
-    @Transactional
     public Room createRoom(Long hostUserId, String hostSessionId) {
         return createRoom(hostUserId, hostSessionId, false);
     }
     
     /**
-     * Загрузить всех пользователей из БД как игроков в комнату (только игроков, не админов)
-     * Использует команду пользователя из БД (teamId берется из user.getTeam().getId())
+     * Вставка RoomEntity не удалась: комната продолжает работать в памяти,
+     * но приглашения в нее недоступны - сообщаем ведущему
+     */
+    private void roomNotPersisted(Room room, Throwable error) {
+        log.error("Failed to persist room {}: {}", room.getCode(), error.getMessage());
+        if (messagingTemplate != null && room.getHostSessionId() != null) {
+            messagingTemplate.convertAndSendToUser(room.getHostSessionId(), "/queue/personal",
+                    GameMessage.error("Комната " + room.getCode() + " не сохранена в базе данных: приглашения в нее недоступны"));
+        }
+    }
+    
+    /**
+     * Загрузить всех пользователей ростера как игроков в комнату (только игроков, не админов)
+     * Использует команду пользователя (teamId из ростера)
      */
     private void loadAllUsersAsPlayers(Room room) {
-        List<User> users = userService.getAllUsers();
+        addPlayers(room, rosterService.getRoster().getUsers());
+    }
+    
+    private void addPlayers(Room room, List<UserResponse> users) {
         final int MAX_PLAYERS = 20; // Максимальное количество игроков
         
         int playerIndex = 0;
         
-        for (User user : users) {
+        for (UserResponse user : users) {
             // Пропускаем администраторов - они не могут быть игроками
             if (user.isAdmin()) {
                 continue;
@@ -146,8 +190,8 @@ public class GameService {
             
             // Берем teamId из команды пользователя (если есть)
             Integer teamId = null;
-            if (user.getTeam() != null) {
-                teamId = user.getTeam().getId().intValue();
+            if (user.getTeamId() != null) {
+                teamId = user.getTeamId().intValue();
             }
             
             Player player = new Player(playerId, name, avatar, teamId);
@@ -161,9 +205,11 @@ public class GameService {
      * Для обратной совместимости со старым фронтендом
      */
     public Room createRoomGuest(String hostSessionId) {
-        String code = generateRoomCode();
+        // Код гостевой комнаты не резервируется: в БД она не попадает, а резерв не освобождается
+        String code = generateRoomCode(false);
         Room room = new Room(code, hostSessionId);
-        rooms.put(code, room);
+        rooms.put(room);
+        roomOpened(room);
         return room;
     }
     
@@ -174,8 +220,8 @@ public class GameService {
         userService.getRoomByCode(roomCode)
                 .orElseThrow(() -> new IllegalArgumentException("Комната не найдена"));
         
-        // Если комната уже активна в памяти, возвращаем её
-        Room existingRoom = rooms.get(roomCode.toUpperCase());
+        // Если комната уже активна в памяти (или сохранена в снимке), возвращаем её
+        Room existingRoom = getRoom(roomCode);
         if (existingRoom != null) {
             return existingRoom;
         }
@@ -184,18 +230,101 @@ public class GameService {
         Room room = new Room(roomCode, sessionId);
         // Загружаем всех пользователей из БД
         loadAllUsersAsPlayers(room);
-        rooms.put(roomCode.toUpperCase(), room);
+        rooms.put(room);
+        roomOpened(room);
         return room;
     }
     
     /**
-     * Получить комнату по коду
+     * Получить комнату по коду.
+     * Если комнаты нет в памяти (после рестарта или вытеснения простаивающей комнаты),
+     * она лениво восстанавливается из off-heap уровня или снимка
      */
     public Room getRoom(String code) {
         if (code == null) {
             return null;
         }
-        return rooms.get(code.toUpperCase());
+        String key = code.toUpperCase();
+        Room room = rooms.get(key);
+        if (room != null) {
+            return room;
+        }
+        return rooms.restore(key, restored -> {
+            // Доигрываем события журнала, записанные после снимка
+            journal.replay(key, restored.getStateVersion(), record -> record.applyTo(restored));
+            resumeRestoredRoom(restored);
+            log.info("Restored room {}, version {}", key, restored.getStateVersion());
+        });
+    }
+    
+    /**
+     * Довести до конца раунд, прерванный рестартом во время окна буферизации
+     */
+    private void resumeRestoredRoom(Room room) {
+        synchronized (room) {
+            if (room.getGameState() == GameState.ACTIVE && !room.getButtonPresses().isEmpty()) {
+                long version = roomChanged(room, room.determineWinner());
+                journalWinner(room, version);
+            }
+        }
+    }
+    
+    /**
+     * Зафиксировать изменение состояния комнаты: увеличить версию, поставить снимок в очередь на запись
+     * и оповестить ожидающие long-poll запросы
+     */
+    private long roomChanged(Room room) {
+        return roomChanged(room, room.nextStateVersion());
+    }
+    
+    /**
+     * Зафиксировать изменение, версию которого комната уже увеличила вместе с самим изменением
+     * (под своей блокировкой, поэтому снимок не увидит изменение со старой версией)
+     */
+    private long roomChanged(Room room, long version) {
+        room.touch();
+        if (!room.isSynthetic()) {
+            snapshotStore.markDirty(room);
+        }
+        stateWaiters.roomChanged(room);
+        return version;
+    }
+    
+    /**
+     * Записать событие комнаты в журнал (служебные комнаты прогрева не журналируются)
+     */
+    private void journalEvent(Room room, JournalEventType type, long version, String playerId,
+                              long clientTimestamp, long serverTime, int arg1, int arg2) {
+        if (!room.isSynthetic()) {
+            journal.append(type, room.getCode(), version, playerId, clientTimestamp, serverTime, arg1, arg2);
+        }
+    }
+    
+    private void roomOpened(Room room) {
+        long version = roomChanged(room);
+        journalEvent(room, JournalEventType.ROOM_OPENED, version, null,
+                0, System.currentTimeMillis(), 0, 0);
+    }
+    
+    /**
+     * Сохранить текущий раунд в историю перед тем, как комната его сбросит
+     */
+    private void archiveRound(Room room) {
+        if (room.isSynthetic()) {
+            return;
+        }
+        CompletedRound round = CompletedRound.of(room);
+        if (round != null) {
+            statsService.record(round);
+            historyWriter.submit(round);
+        }
+    }
+    
+    private void journalWinner(Room room, long version) {
+        if (room.getWinnerId() != null) {
+            journalEvent(room, JournalEventType.WINNER_DETERMINED, version, room.getWinnerId(),
+                    0, System.currentTimeMillis(), 0, 0);
+        }
     }
     
     /**
@@ -228,8 +357,13 @@ public class GameService {
         
         Player player = room.getPlayerById(playerId);
         if (player != null) {
-            player.setSessionId(sessionId);
-            player.setConnected(true);
+            long version;
+            synchronized (room) {
+                player.setSessionId(sessionId);
+                player.setConnected(true);
+                version = room.nextStateVersion();
+            }
+            roomChanged(room, version);
         }
         
         return player;
@@ -246,7 +380,12 @@ public class GameService {
         
         Player player = room.getPlayerById(playerId);
         if (player != null) {
-            room.removePlayer(playerId);
+            long version;
+            synchronized (room) {
+                room.removePlayer(playerId);
+                version = room.nextStateVersion();
+            }
+            roomChanged(room, version);
         }
         
         return player;
@@ -261,7 +400,10 @@ public class GameService {
             return false;
         }
         
-        room.startRound();
+        archiveRound(room);
+        long version = roomChanged(room, room.startRound());
+        journalEvent(room, JournalEventType.ROUND_STARTED, version, null,
+                0, room.getRoundStartTime(), 0, 0);
         return true;
     }
     
@@ -285,16 +427,23 @@ public class GameService {
         }
         
         // Регистрируем нажатие
-        boolean isFirstPress = room.registerButtonPress(playerId, clientTimestamp);
+        Room.Press registered = room.pressButton(playerId, clientTimestamp);
+        if (registered == null) {
+            return null; // Повторное нажатие или раунд уже завершен
+        }
+        ButtonPress press = registered.press();
+        long version = roomChanged(room, registered.version());
+        journalEvent(room, JournalEventType.BUTTON_PRESSED, version, playerId,
+                clientTimestamp, press.getServerReceiveTime(), press.getPosition(), 0);
         
-        if (isFirstPress) {
+        if (press.getPosition() == 1) {
             // Это первое нажатие - запускаем таймер для определения победителя
             long bufferWindow = room.calculateBufferWindow();
             
             room.setWinnerDeterminationTask(
                 scheduler.schedule(() -> {
                     synchronized (room) {
-                        room.determineWinner();
+                        journalWinner(room, roomChanged(room, room.determineWinner()));
                         // Уведомляем всех о результате
                         notifyRoomState(roomCode);
                     }
@@ -302,13 +451,7 @@ public class GameService {
             );
         }
         
-        // Возвращаем последнее нажатие
-        var presses = room.getButtonPresses();
-        if (!presses.isEmpty()) {
-            return presses.get(presses.size() - 1);
-        }
-        
-        return null;
+        return press;
     }
     
     /**
@@ -342,7 +485,10 @@ public class GameService {
             return false;
         }
         
-        room.resetRound();
+        archiveRound(room);
+        long version = roomChanged(room, room.resetRound());
+        journalEvent(room, JournalEventType.ROUND_RESET, version, null,
+                0, System.currentTimeMillis(), 0, 0);
         return true;
     }
     
@@ -361,7 +507,9 @@ public class GameService {
         }
         
         // Оглушаем игрока (действует до конца текущего/следующего раунда)
-        player.setStunned(true);
+        long version = roomChanged(room, room.stunPlayer(player));
+        journalEvent(room, JournalEventType.PLAYER_STUNNED, version, playerId,
+                0, System.currentTimeMillis(), 0, 0);
         return true;
     }
     
@@ -372,16 +520,44 @@ public class GameService {
         for (Room room : rooms.values()) {
             Player player = room.getPlayerBySessionId(sessionId);
             if (player != null) {
-                player.setConnected(false);
+                long version;
+                synchronized (room) {
+                    player.setConnected(false);
+                    version = room.nextStateVersion();
+                }
+                roomChanged(room, version);
             }
         }
     }
     
+    /**
+     * Коды комнат, активных в памяти
+     */
+    public Set<String> getActiveRoomCodes() {
+        return rooms.codes();
+    }
+    
     /**
      * Удалить комнату
      */
     public void deleteRoom(String code) {
-        rooms.remove(code.toUpperCase());
+        Room removed = rooms.remove(code);
+        if (removed == null || !removed.isSynthetic()) {
+            snapshotStore.remove(code);
+        }
+        stateWaiters.roomClosed(code);
+    }
+    
+    /**
+     * Открыть служебную комнату прогрева с заданными игроками.
+     * Комната работает через обычные методы сервиса, но не пишет снимков, журнала и истории
+     */
+    public Room openSyntheticRoom(String code, String hostSessionId, List<Player> players) {
+        Room room = new Room(code, hostSessionId);
+        room.setSynthetic(true);
+        players.forEach(room::addPlayer);
+        rooms.put(room);
+        return room;
     }
     
     /**
@@ -401,25 +577,28 @@ public class GameService {
             return false; // Только хост может обновлять главу
         }
         
-        room.setCurrentChapter(chapter);
-        room.setCurrentPart(part);
+        long version = roomChanged(room, room.changeChapter(chapter, part));
+        journalEvent(room, JournalEventType.CHAPTER_CHANGED, version, null,
+                0, System.currentTimeMillis(), chapter != null ? chapter : 0, part != null ? part : 0);
         return true;
     }
     
     /**
-     * Генерация 4-значного кода комнаты (проверяет и в памяти, и в БД)
+     * Генерация 4-значного кода комнаты (проверяет комнаты в памяти и индекс кодов из БД)
+     *
+     * @param persistent комната будет сохранена в БД - код резервируется
      */
-    private String generateRoomCode() {
-        String chars = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private String generateRoomCode(boolean persistent) {
+        String chars = RoomRecords.CODE_ALPHABET;
         StringBuilder code;
         
         do {
             code = new StringBuilder();
-            for (int i = 0; i < 4; i++) {
+            for (int i = 0; i < RoomRecords.CODE_LENGTH; i++) {
                 code.append(chars.charAt(random.nextInt(chars.length())));
             }
-        } while (rooms.containsKey(code.toString().toUpperCase()) || 
-                 userService.getRoomByCode(code.toString()).isPresent());
+        } while (rooms.contains(code.toString())
+                || (persistent ? !roomRecords.reserve(code.toString()) : roomRecords.isTaken(code.toString())));
         
         return code.toString();
     }
@@ -0,0 +1,283 @@
+package com.quizbattle.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Уменьшенные варианты картинок глав для телефонов (ширины quizbattle.assets.chapter-widths).
+ *
+ * Варианты строятся в фоне через javax.imageio: после старта для всех глав, а для новых
+ * или измененных картинок - при первом запросе (до готовности отдается исходник).
+ * Файлы вариантов лежат на диске под именем <версия исходника>-w<ширина>.jpg, поэтому
+ * переживают рестарт; ETag варианта - хэш его содержимого
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final long RETIRED_FILE_GRACE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final AssetService assetService;
+    private final List<Integer> widths;
+    private final Path directory;
+    private final float quality;
+
+    // "<файл>@<ширина>" -> вариант для текущей версии исходника
+    private final Map<String, Variant> variants = new ConcurrentHashMap<>();
+    private final Set<String> scheduled = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "image-variants");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImageVariantService(AssetService assetService,
+                               @Value("${quizbattle.assets.chapter-widths:360,540,720}") List<Integer> widths,
+                               @Value("${quizbattle.assets.derivatives-dir:${java.io.tmpdir}/quizbattle-derivatives}") String directory,
+                               @Value("${quizbattle.assets.derivative-quality:0.8}") float quality) {
+        this.assetService = assetService;
+        this.widths = widths.stream().filter(width -> width > 0).distinct().sorted().toList();
+        this.directory = Path.of(directory);
+        this.quality = quality;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void pregenerate() {
+        if (widths.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.currentTimeMillis();
+            for (String filename : assetService.getFilenames(AssetService.CHAPTERS)) {
+                assetService.getAsset(AssetService.CHAPTERS, filename).ifPresent(this::generate);
+            }
+            removeUnusedFiles();
+            log.info("Chapter image variants ready in {} ms ({} variants, widths {})",
+                    System.currentTimeMillis() - start, variants.size(), widths);
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Представление картинки для экрана шириной targetWidth пикселей: наименьший вариант
+     * не уже запрошенного или сам исходник, если подходящего варианта нет.
+     * Пусто, если вариант еще строится (тогда стоит отдать исходник без долгого кеширования)
+     */
+    public Optional<AssetService.Asset> select(AssetService.Asset source, int targetWidth) {
+        if (!isScalable(source.getFilename())) {
+            return Optional.of(source);
+        }
+        for (int width : widths) {
+            if (width < targetWidth) {
+                continue;
+            }
+            Variant variant = variants.get(key(source.getFilename(), width));
+            if (variant == null || !variant.sourceVersion.equals(source.getVersion())) {
+                schedule(source);
+                return Optional.empty();
+            }
+            // Исходник не шире варианта - уменьшать нечего
+            return Optional.of(variant.asset != null ? variant.asset : source);
+        }
+        return Optional.of(source);
+    }
+
+    private void schedule(AssetService.Asset source) {
+        String task = source.getFilename() + "@" + source.getVersion();
+        if (scheduled.add(task)) {
+            executor.execute(() -> {
+                try {
+                    generate(source);
+                } finally {
+                    scheduled.remove(task);
+                }
+            });
+        }
+    }
+
+    /**
+     * Построить недостающие варианты картинки (выполняется в потоке image-variants)
+     */
+    private void generate(AssetService.Asset source) {
+        if (!isScalable(source.getFilename())) {
+            return;
+        }
+        BufferedImage image = null;
+        try {
+            for (int width : widths) {
+                String key = key(source.getFilename(), width);
+                Variant current = variants.get(key);
+                if (current != null && current.sourceVersion.equals(source.getVersion())) {
+                    continue;
+                }
+                if (image == null) {
+                    image = read(source);
+                }
+                AssetService.Asset asset = width < image.getWidth() ? variantFile(source, image, width) : null;
+                Variant previous = variants.put(key, new Variant(source.getVersion(), asset));
+                if (previous != null && previous.asset != null
+                        && (asset == null || !previous.asset.getFile().equals(asset.getFile()))) {
+                    retire(previous.asset.getFile());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to build variants of chapter image {}: {}", source.getFilename(), e.getMessage());
+        }
+    }
+
+    private AssetService.Asset variantFile(AssetService.Asset source, BufferedImage image, int width) throws IOException {
+        Path file = directory.resolve(source.getVersion() + "-w" + width + ".jpg");
+        if (!Files.isRegularFile(file)) {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "variant", ".tmp");
+            try {
+                writeJpeg(scale(image, width), temp);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        return AssetService.Asset.fileBacked(source.getFilename(), file, bytes.length, AssetService.hash(bytes));
+    }
+
+    private static BufferedImage read(AssetService.Asset source) throws IOException {
+        try (InputStream in = source.isFileBacked()
+                ? Files.newInputStream(source.getFile())
+                : new ByteArrayInputStream(source.getBytes())) {
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                throw new IOException("unsupported image format");
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Уменьшение последовательными шагами не более чем вдвое (билинейная интерполяция
+     * за один большой шаг дает заметные артефакты)
+     */
+    private static BufferedImage scale(BufferedImage image, int width) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(1, (int) Math.round((double) image.getHeight() * nextWidth / image.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void retire(Path file) {
+        executor.schedule(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.debug("Failed to delete image variant {}: {}", file, e.getMessage());
+            }
+        }, RETIRED_FILE_GRACE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Удалить файлы вариантов прежних версий картинок (остаются после замены картинок между запусками)
+     */
+    private void removeUnusedFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<Path> used = variants.values().stream()
+                .filter(variant -> variant.asset != null)
+                .map(variant -> variant.asset.getFile())
+                .collect(Collectors.toSet());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*-w*.jpg")) {
+            for (Path file : files) {
+                if (!used.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to clean image variants in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static boolean isScalable(String filename) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    private static String key(String filename, int width) {
+        return filename + "@" + width;
+    }
+
+    /**
+     * Вариант для версии исходника; asset == null - исходник не шире варианта
+     */
+    private static final class Variant {
+        private final String sourceVersion;
+        private final AssetService.Asset asset;
+
+        private Variant(String sourceVersion, AssetService.Asset asset) {
+            this.sourceVersion = sourceVersion;
+            this.asset = asset;
+        }
+    }
+}
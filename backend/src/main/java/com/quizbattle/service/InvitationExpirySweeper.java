@@ -0,0 +1,119 @@
+package com.quizbattle.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически переводит в EXPIRED ожидающие приглашения в комнаты,
+ * которые старше TTL или уже не активны в GameService.
+ * Срок отсчитывается от updated_at: повторно открытое приглашение получает новый срок.
+ * Отсутствие комнаты в памяти учитывается, только когда приложение проработало inactive-grace:
+ * после рестарта комнаты поднимаются лениво и сначала не видны в GameService.
+ * Обновление идет пачками через UPDATE ... WHERE id IN (SELECT ... LIMIT), чтобы
+ * не держать длинные блокировки; подзапрос использует индекс (status, updated_at)
+ */
+@Service
+public class InvitationExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(InvitationExpirySweeper.class);
+
+    private static final String EXPIRE_SQL =
+            "UPDATE room_invitations SET status = 'EXPIRED', updated_at = now() WHERE id IN (" +
+            "  SELECT i.id FROM room_invitations i JOIN rooms r ON r.id = i.room_id" +
+            "  WHERE i.status = 'PENDING' AND i.updated_at < ?" +
+            "    AND (r.created_at < ? OR (? AND r.code <> ALL(?)))" +
+            "  LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GameService gameService;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "invitation-expiry-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${quizbattle.invitations.sweep-interval:PT1M}")
+    private Duration sweepInterval;
+
+    @Value("${quizbattle.invitations.room-ttl:PT12H}")
+    private Duration roomTtl;
+
+    // Приглашения, открытые позже этого срока, не трогаем, даже если комнаты нет в памяти;
+    // столько же после старта не считаем комнаты неактивными (они поднимаются лениво)
+    @Value("${quizbattle.invitations.inactive-grace:PT15M}")
+    private Duration inactiveGrace;
+
+    @Value("${quizbattle.invitations.sweep-batch-size:500}")
+    private int batchSize;
+
+    private volatile long startedAt;
+
+    public InvitationExpirySweeper(JdbcTemplate jdbcTemplate, GameService gameService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.gameService = gameService;
+    }
+
+    // Отсчет inactive-grace идет с момента готовности приложения, а не с создания бина
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        startedAt = System.currentTimeMillis();
+        long intervalMs = sweepInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Истечь устаревшие приглашения, возвращает число обновленных строк
+     */
+    public int sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            Timestamp graceCutoff = new Timestamp(now - inactiveGrace.toMillis());
+            Timestamp ttlCutoff = new Timestamp(now - roomTtl.toMillis());
+            boolean checkInactive = now - startedAt >= inactiveGrace.toMillis();
+            Set<String> activeCodes = gameService.getActiveRoomCodes();
+
+            int total = 0;
+            int updated;
+            do {
+                updated = jdbcTemplate.update(connection -> {
+                    var statement = connection.prepareStatement(EXPIRE_SQL);
+                    Array codes = connection.createArrayOf("varchar", activeCodes.toArray());
+                    statement.setTimestamp(1, graceCutoff);
+                    statement.setTimestamp(2, ttlCutoff);
+                    statement.setBoolean(3, checkInactive);
+                    statement.setArray(4, codes);
+                    statement.setInt(5, batchSize);
+                    return statement;
+                });
+                total += updated;
+            } while (updated == batchSize);
+
+            if (total > 0) {
+                log.info("Expired {} pending invitations", total);
+            }
+            return total;
+        } catch (RuntimeException e) {
+            log.warn("Invitation expiry sweep failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.model.Room;
+import com.quizbattle.model.RoomSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Холодный уровень хранилища комнат: снимки вытесненных комнат в direct-буферах вне кучи.
+ * Объем ограничен; при переполнении выбрасываются самые давно вытесненные снимки
+ * (они остаются в БД, если включены снимки комнат)
+ */
+class OffHeapRoomTier {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapRoomTier.class);
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+
+    // Порядок вставки = порядок вытеснения
+    private final LinkedHashMap<String, ByteBuffer> buffers = new LinkedHashMap<>();
+    private long usedBytes;
+
+    OffHeapRoomTier(ObjectMapper objectMapper, long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Сохранить снимок комнаты вне кучи
+     */
+    void put(String key, Room room) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(RoomSnapshot.of(room));
+        } catch (IOException e) {
+            log.warn("Failed to serialize room {} for off-heap tier: {}", key, e.getMessage());
+            return;
+        }
+        if (bytes.length > maxBytes) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        synchronized (this) {
+            remove(key);
+            buffers.put(key, buffer);
+            usedBytes += bytes.length;
+            for (Iterator<Map.Entry<String, ByteBuffer>> it = buffers.entrySet().iterator();
+                 usedBytes > maxBytes && it.hasNext(); ) {
+                usedBytes -= it.next().getValue().capacity();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Забрать комнату из холодного уровня (снимок при этом удаляется)
+     */
+    Optional<Room> take(String key) {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = buffers.remove(key);
+            if (buffer == null) {
+                return Optional.empty();
+            }
+            usedBytes -= buffer.capacity();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        try {
+            return Optional.of(objectMapper.readValue(bytes, RoomSnapshot.class).toRoom());
+        } catch (IOException e) {
+            log.warn("Corrupted off-heap snapshot for room {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    synchronized void remove(String key) {
+        ByteBuffer buffer = buffers.remove(key);
+        if (buffer != null) {
+            usedBytes -= buffer.capacity();
+        }
+    }
+
+    synchronized boolean contains(String key) {
+        return buffers.containsKey(key);
+    }
+
+    synchronized int size() {
+        return buffers.size();
+    }
+
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+}
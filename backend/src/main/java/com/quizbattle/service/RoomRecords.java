@@ -0,0 +1,241 @@
+package com.quizbattle.service;
+
+import com.quizbattle.model.entity.RoomEntity;
+import com.quizbattle.repository.RoomRepository;
+import com.quizbattle.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Записи комнат в БД (таблица rooms), видимые из памяти.
+ *
+ * При старте одним запросом загружаются коды комнат и последняя комната каждого ведущего,
+ * после этого создание комнаты не обращается к БД: код резервируется в памяти, а вставка
+ * RoomEntity выполняется в отдельном потоке. Операции, которым нужна запись комнаты
+ * (приглашения), не ждут вставку: пока она в очереди, они отклоняются с просьбой повторить.
+ *
+ * Занятые коды хранятся битовой картой по всему пространству кодов ({@link #CODE_ALPHABET}
+ * в степени {@link #CODE_LENGTH}, 128 КБ), поэтому память не растет с числом созданных комнат.
+ * Коды другого формата (старые записи) не могут совпасть с генерируемыми и не индексируются
+ */
+@Service
+public class RoomRecords {
+
+    // Формат кодов, которые генерирует GameService
+    public static final String CODE_ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    public static final int CODE_LENGTH = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(RoomRecords.class);
+
+    private static final int CODE_SPACE = (int) Math.pow(CODE_ALPHABET.length(), CODE_LENGTH);
+
+    private final RoomRepository roomRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Бит на каждый возможный код: занят комнатой из БД или зарезервирован
+    private final AtomicLongArray taken = new AtomicLongArray((CODE_SPACE + 63) / 64);
+    private final Map<Long, String> latestByHost = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "room-record-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomRecords(RoomRepository roomRepository,
+                       UserRepository userRepository,
+                       TransactionTemplate transactionTemplate) {
+        this.roomRepository = roomRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            ensureLoaded();
+        } catch (RuntimeException e) {
+            // Повторим при первом создании комнаты
+            log.warn("Failed to load room codes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Дописываем поставленные в очередь вставки
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Room records still pending at shutdown: {}", pending.keySet());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Зарезервировать код комнаты
+     *
+     * @return false, если код уже занят (в БД или другой комнатой в памяти)
+     */
+    public boolean reserve(String code) {
+        ensureLoaded();
+        int slot = slot(code);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Код комнаты вне формата генератора: " + code);
+        }
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        long current;
+        do {
+            current = taken.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!taken.compareAndSet(word, current, current | bit));
+        return true;
+    }
+
+    /**
+     * Занят ли код комнатой из БД или зарезервированной комнатой (без резервирования)
+     */
+    public boolean isTaken(String code) {
+        ensureLoaded();
+        int slot = slot(code);
+        return slot >= 0 && (taken.get(slot >>> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Код последней комнаты ведущего
+     */
+    public Optional<String> getLatestRoomCode(Long hostUserId) {
+        ensureLoaded();
+        return Optional.ofNullable(latestByHost.get(hostUserId));
+    }
+
+    /**
+     * Поставить вставку RoomEntity в очередь. Код должен быть зарезервирован через {@link #reserve}.
+     * Комната сразу считается последней комнатой ведущего; если вставка не удалась, это отменяется
+     * и код освобождается (кроме нарушения уникальности: код уже записан в БД, например другим экземпляром)
+     *
+     * @return завершается после коммита вставки или с ошибкой
+     */
+    public CompletableFuture<Void> persist(String code, Long hostUserId) {
+        String key = code.toUpperCase();
+        latestByHost.put(hostUserId, key);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        pending.put(key, result);
+        writer.execute(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        roomRepository.save(new RoomEntity(key, userRepository.getReferenceById(hostUserId))));
+                result.complete(null);
+            } catch (RuntimeException e) {
+                latestByHost.remove(hostUserId, key);
+                if (!(e instanceof DataIntegrityViolationException)) {
+                    release(key);
+                }
+                result.completeExceptionally(e);
+            } finally {
+                pending.remove(key, result);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Проверить, что запись комнаты уже вставлена (перед работой с приглашениями).
+     * Поток запроса не ждет вставку: клиент повторяет запрос
+     *
+     * @throws IllegalStateException если вставка еще в очереди
+     * @throws IllegalArgumentException если вставка не удалась
+     */
+    public void checkPersisted(String code) {
+        if (code == null) {
+            return;
+        }
+        CompletableFuture<Void> result = pending.get(code.toUpperCase());
+        if (result == null) {
+            return;
+        }
+        if (!result.isDone()) {
+            throw new IllegalStateException("Комната еще сохраняется, повторите позже");
+        }
+        if (result.isCompletedExceptionally()) {
+            throw new IllegalArgumentException("Комната не сохранена в базе данных");
+        }
+    }
+
+    private void release(String code) {
+        int slot = slot(code);
+        if (slot >= 0) {
+            long bit = 1L << slot;
+            taken.getAndUpdate(slot >>> 6, current -> current & ~bit);
+        }
+    }
+
+    /**
+     * Номер кода в пространстве кодов генератора или -1 для кода другого формата
+     */
+    private static int slot(String code) {
+        if (code.length() != CODE_LENGTH) {
+            return -1;
+        }
+        int slot = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            int digit = CODE_ALPHABET.indexOf(Character.toUpperCase(code.charAt(i)));
+            if (digit < 0) {
+                return -1;
+            }
+            slot = slot * CODE_ALPHABET.length() + digit;
+        }
+        return slot;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            List<Object[]> rows = roomRepository.findCodesAndHosts();
+            for (Object[] row : rows) {
+                String code = ((String) row[0]).toUpperCase();
+                int slot = slot(code);
+                if (slot >= 0) {
+                    taken.getAndUpdate(slot >>> 6, current -> current | (1L << slot));
+                }
+                // Строки упорядочены по времени создания: остается последняя комната ведущего
+                latestByHost.put((Long) row[1], code);
+            }
+            loaded = true;
+            log.info("Loaded {} room codes in {} ms", rows.size(), System.currentTimeMillis() - start);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+}
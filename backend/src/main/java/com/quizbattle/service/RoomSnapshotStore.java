@@ -0,0 +1,305 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.model.Room;
+import com.quizbattle.model.RoomSnapshot;
+import com.quizbattle.repository.RoomSnapshotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind хранилище снимков комнат.
+ * Игровые потоки только помечают комнату как измененную, а отдельный поток
+ * периодически сохраняет снимки в БД пачками (несколько изменений одной комнаты
+ * схлопываются в одну запись, не чаще min-interval-ms на комнату)
+ */
+@Service
+public class RoomSnapshotStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomSnapshotStore.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO room_snapshots (code, version, state, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (code) DO UPDATE SET version = EXCLUDED.version, state = EXCLUDED.state, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoomSnapshotRepository snapshotRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Room> dirtyRooms = new ConcurrentHashMap<>();
+    private final Set<String> deletedRooms = ConcurrentHashMap.newKeySet();
+    // Коды без снимка (устаревшие или опечатки): повторные обращения не идут в БД до истечения miss-ttl
+    private final Map<String, Long> misses = new ConcurrentHashMap<>();
+    // Только поток записи обращается к этим картам
+    private final Map<String, Long> lastFlushTimes = new ConcurrentHashMap<>();
+    private final Map<String, Long> flushedVersions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${quizbattle.snapshots.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quizbattle.snapshots.flush-interval-ms:250}")
+    private long flushIntervalMs;
+
+    @Value("${quizbattle.snapshots.min-interval-ms:1000}")
+    private long minIntervalMs;
+
+    @Value("${quizbattle.snapshots.batch-size:100}")
+    private int batchSize;
+
+    @Value("${quizbattle.snapshots.miss-ttl-ms:5000}")
+    private long missTtlMs;
+
+    @Value("${quizbattle.snapshots.max-misses:10000}")
+    private int maxMisses;
+
+    public RoomSnapshotStore(JdbcTemplate jdbcTemplate,
+                             RoomSnapshotRepository snapshotRepository,
+                             ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotRepository = snapshotRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            writer.scheduleWithFixedDelay(() -> flush(false), flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (enabled) {
+            // Дописываем все, что осталось, без учета ограничения частоты
+            flush(true);
+        }
+    }
+
+    /**
+     * Пометить комнату как измененную. Не блокирует: запись произойдет в фоне
+     */
+    public void markDirty(Room room) {
+        if (enabled) {
+            String key = room.getCode().toUpperCase();
+            dirtyRooms.put(key, room);
+            misses.remove(key);
+        }
+    }
+
+    /**
+     * Удалить снимок комнаты (асинхронно)
+     */
+    public void remove(String code) {
+        if (enabled) {
+            String key = code.toUpperCase();
+            dirtyRooms.remove(key);
+            deletedRooms.add(key);
+        }
+    }
+
+    /**
+     * Комната вытеснена из памяти: дописать ее незаписанные изменения и забыть служебные
+     * отметки о записи (снимок в БД остается для восстановления). Выполняется потоком записи
+     */
+    public void evicted(String code) {
+        if (enabled) {
+            String key = code.toUpperCase();
+            writer.execute(() -> forget(key));
+        }
+    }
+
+    /**
+     * Загрузить комнату из последнего сохраненного снимка.
+     * Комната, ожидающая записи, возвращается как есть - ее снимок в БД еще устарел.
+     * Удаленная комната (снимок еще не стерт) и недавно не найденный код не загружаются
+     */
+    public Optional<Room> load(String code) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = code.toUpperCase();
+        Room pending = dirtyRooms.get(key);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        if (deletedRooms.contains(key)) {
+            return Optional.empty();
+        }
+        Long missUntil = misses.get(key);
+        if (missUntil != null) {
+            if (System.nanoTime() - missUntil < 0) {
+                return Optional.empty();
+            }
+            misses.remove(key, missUntil);
+        }
+        try {
+            Optional<Room> room = snapshotRepository.findById(key)
+                    .map(entity -> {
+                        try {
+                            return objectMapper.readValue(entity.getState(), RoomSnapshot.class).toRoom();
+                        } catch (JsonProcessingException e) {
+                            log.warn("Corrupted snapshot for room {}: {}", entity.getCode(), e.getMessage());
+                            return null;
+                        }
+                    });
+            if (room.isEmpty()) {
+                rememberMiss(key);
+            }
+            return room;
+        } catch (Exception e) {
+            log.warn("Failed to load snapshot for room {}: {}", code, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void rememberMiss(String key) {
+        if (misses.size() >= maxMisses) {
+            long now = System.nanoTime();
+            misses.values().removeIf(until -> now - until >= 0);
+            if (misses.size() >= maxMisses) {
+                misses.clear();
+            }
+        }
+        misses.put(key, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(missTtlMs));
+    }
+
+    private synchronized void flush(boolean force) {
+        try {
+            flushDeleted();
+            flushDirty(force);
+        } catch (Exception e) {
+            // Комнаты остаются помеченными и будут записаны в следующий раз
+            log.warn("Room snapshot flush failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void forget(String code) {
+        Room room = dirtyRooms.remove(code);
+        if (room != null) {
+            try {
+                RoomSnapshot snapshot = RoomSnapshot.of(room);
+                jdbcTemplate.update(UPSERT_SQL, code, snapshot.getVersion(),
+                        objectMapper.writeValueAsString(snapshot), new Timestamp(System.currentTimeMillis()));
+            } catch (JsonProcessingException | RuntimeException e) {
+                // Останется в очереди: запишется обычным проходом
+                dirtyRooms.putIfAbsent(code, room);
+                log.warn("Failed to write snapshot of evicted room {}: {}", code, e.getMessage());
+                return;
+            }
+        }
+        lastFlushTimes.remove(code);
+        flushedVersions.remove(code);
+    }
+
+    private void flushDeleted() {
+        if (deletedRooms.isEmpty()) {
+            return;
+        }
+        List<String> codes = new ArrayList<>(deletedRooms);
+        List<Object[]> batch = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            batch.add(new Object[]{code});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM room_snapshots WHERE code = ?", batch);
+        // Отметка снимается только после удаления строки: до этого load() не должен ее читать
+        for (String code : codes) {
+            deletedRooms.remove(code);
+            lastFlushTimes.remove(code);
+            flushedVersions.remove(code);
+        }
+    }
+
+    private void flushDirty(boolean force) {
+        long now = System.currentTimeMillis();
+        List<Room> rooms = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+
+        for (Map.Entry<String, Room> entry : dirtyRooms.entrySet()) {
+            String code = entry.getKey();
+            Long lastFlush = lastFlushTimes.get(code);
+            if (!force && lastFlush != null && now - lastFlush < minIntervalMs) {
+                continue; // Слишком часто - запишем на следующем проходе
+            }
+
+            Room room = entry.getValue();
+            // Снимаем с пометки до снятия снимка: изменения после этого момента пометят комнату снова
+            if (!dirtyRooms.remove(code, room)) {
+                continue;
+            }
+
+            RoomSnapshot snapshot = RoomSnapshot.of(room);
+            Long flushedVersion = flushedVersions.get(code);
+            if (flushedVersion != null && flushedVersion == snapshot.getVersion()) {
+                continue;
+            }
+
+            try {
+                batch.add(new Object[]{
+                        code,
+                        snapshot.getVersion(),
+                        objectMapper.writeValueAsString(snapshot),
+                        new Timestamp(now)
+                });
+                rooms.add(room);
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to serialize snapshot for room {}: {}", code, e.getMessage());
+            }
+
+            if (batch.size() >= batchSize) {
+                writeBatch(rooms, batch, now);
+                rooms = new ArrayList<>();
+                batch = new ArrayList<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatch(rooms, batch, now);
+        }
+    }
+
+    private void writeBatch(List<Room> rooms, List<Object[]> batch, long now) {
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+            for (int i = 0; i < rooms.size(); i++) {
+                String code = (String) batch.get(i)[0];
+                lastFlushTimes.put(code, now);
+                flushedVersions.put(code, (Long) batch.get(i)[1]);
+            }
+        } catch (RuntimeException e) {
+            // Возвращаем комнаты в очередь, если их еще не пометили заново
+            for (int i = 0; i < rooms.size(); i++) {
+                dirtyRooms.putIfAbsent((String) batch.get(i)[0], rooms.get(i));
+            }
+            throw e;
+        }
+    }
+}
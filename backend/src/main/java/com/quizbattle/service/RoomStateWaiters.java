@@ -0,0 +1,137 @@
+package com.quizbattle.service;
+
+import com.quizbattle.model.Room;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ожидающие изменения комнаты long-poll запросы (GET /api/room/{code}/state?since=&wait=).
+ *
+ * Для каждой комнаты хранится список ожидающих; при изменении состояния комнаты
+ * они оповещаются в отдельном потоке, чтобы не задерживать игровые операции.
+ * Общее число ожидающих ограничено quizbattle.rooms.long-poll.max-waiters
+ */
+@Service
+public class RoomStateWaiters {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomStateWaiters.class);
+
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int maxWaiters;
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "room-state-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomStateWaiters(MeterRegistry meterRegistry,
+                            @Value("${quizbattle.rooms.long-poll.max-waiters:2000}") int maxWaiters) {
+        this.maxWaiters = maxWaiters;
+        Gauge.builder("quizbattle.rooms.long-poll.waiters", count, AtomicInteger::get)
+                .description("Long-poll requests waiting for a room state change")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        notifier.shutdownNow();
+    }
+
+    /**
+     * Ждать изменения комнаты после версии sinceVersion.
+     * onChange вызывается один раз: с комнатой после изменения или с null, если комната закрыта
+     *
+     * @return отмена ожидания (по таймауту запроса), пусто если ожидающих слишком много
+     */
+    public Optional<Runnable> await(Room room, long sinceVersion, Consumer<Room> onChange) {
+        if (count.incrementAndGet() > maxWaiters) {
+            count.decrementAndGet();
+            return Optional.empty();
+        }
+        String key = room.getCode().toUpperCase();
+        Waiter waiter = new Waiter(onChange);
+        Set<Waiter> roomWaiters = waiters.compute(key, (k, existing) -> {
+            Set<Waiter> set = existing != null ? existing : ConcurrentHashMap.newKeySet();
+            set.add(waiter);
+            return set;
+        });
+        // Изменение могло случиться между проверкой версии и регистрацией
+        if (room.getStateVersion() > sinceVersion) {
+            fire(key, roomWaiters, waiter, room);
+        }
+        return Optional.of(() -> {
+            if (waiter.done.compareAndSet(false, true)) {
+                detach(key, roomWaiters, waiter);
+            }
+        });
+    }
+
+    /**
+     * Состояние комнаты изменилось (вызывается из GameService после изменения)
+     */
+    public void roomChanged(Room room) {
+        String key = room.getCode().toUpperCase();
+        Set<Waiter> roomWaiters = waiters.get(key);
+        if (roomWaiters == null || roomWaiters.isEmpty()) {
+            return;
+        }
+        notifier.execute(() -> roomWaiters.forEach(waiter -> fire(key, roomWaiters, waiter, room)));
+    }
+
+    /**
+     * Комната закрыта: ожидающие получают null
+     */
+    public void roomClosed(String code) {
+        String key = code.toUpperCase();
+        Set<Waiter> roomWaiters = waiters.get(key);
+        if (roomWaiters == null || roomWaiters.isEmpty()) {
+            return;
+        }
+        notifier.execute(() -> roomWaiters.forEach(waiter -> fire(key, roomWaiters, waiter, null)));
+    }
+
+    private void fire(String key, Set<Waiter> roomWaiters, Waiter waiter, Room room) {
+        if (!waiter.done.compareAndSet(false, true)) {
+            return;
+        }
+        detach(key, roomWaiters, waiter);
+        try {
+            waiter.onChange.accept(room);
+        } catch (RuntimeException e) {
+            log.debug("Failed to complete long-poll request for room {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void detach(String key, Set<Waiter> roomWaiters, Waiter waiter) {
+        if (roomWaiters.remove(waiter)) {
+            count.decrementAndGet();
+        }
+        // Пустой список убираем, только если его не успели пополнить
+        waiters.computeIfPresent(key, (k, set) -> set.isEmpty() ? null : set);
+    }
+
+    private static final class Waiter {
+        private final Consumer<Room> onChange;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Waiter(Consumer<Room> onChange) {
+            this.onChange = onChange;
+        }
+    }
+}
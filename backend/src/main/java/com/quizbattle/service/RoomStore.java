@@ -0,0 +1,349 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.model.Room;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченное хранилище активных комнат.
+ *
+ * Комната, к которой не обращались дольше idle-ttl, вытесняется фоновым проходом;
+ * если комнат в памяти больше max-live, сразу вытесняются самые давно использованные.
+ * Вытесненная комната остается в снимке в БД (незаписанные изменения дописываются),
+ * а при включенном off-heap уровне - еще и в буфере вне кучи. При следующем обращении
+ * комната восстанавливается: сначала из off-heap уровня, затем из снимка
+ */
+@Service
+public class RoomStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomStore.class);
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final RoomSnapshotStore snapshotStore;
+    private final OffHeapRoomTier offHeap; // null, если off-heap уровень выключен
+    private final Map<String, Restore> restoring = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    // Вызываются с кодом комнаты, покинувшей память (вытеснение или удаление)
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration idleTtl;
+    private final int maxLive;
+    private final Duration sweepInterval;
+
+    private final Counter evictedIdle;
+    private final Counter evictedCapacity;
+    private final Counter rehydratedOffHeap;
+    private final Counter rehydratedSnapshot;
+
+    public RoomStore(RoomSnapshotStore snapshotStore,
+                     ObjectMapper objectMapper,
+                     MeterRegistry meterRegistry,
+                     @Value("${quizbattle.rooms.idle-ttl:PT2H}") Duration idleTtl,
+                     @Value("${quizbattle.rooms.max-live:5000}") int maxLive,
+                     @Value("${quizbattle.rooms.sweep-interval:PT1M}") Duration sweepInterval,
+                     @Value("${quizbattle.rooms.offheap.enabled:false}") boolean offHeapEnabled,
+                     @Value("${quizbattle.rooms.offheap.max-size:64MB}") DataSize offHeapMaxSize) {
+        this.snapshotStore = snapshotStore;
+        this.idleTtl = idleTtl;
+        this.maxLive = Math.max(1, maxLive);
+        this.sweepInterval = sweepInterval;
+        this.offHeap = offHeapEnabled ? new OffHeapRoomTier(objectMapper, offHeapMaxSize.toBytes()) : null;
+
+        Gauge.builder("quizbattle.rooms.live", rooms, Map::size)
+                .description("Rooms held in memory")
+                .register(meterRegistry);
+        this.evictedIdle = evictedCounter(meterRegistry, "idle");
+        this.evictedCapacity = evictedCounter(meterRegistry, "capacity");
+        this.rehydratedOffHeap = rehydratedCounter(meterRegistry, "offheap");
+        this.rehydratedSnapshot = rehydratedCounter(meterRegistry, "snapshot");
+        if (offHeap != null) {
+            Gauge.builder("quizbattle.rooms.offheap", offHeap, OffHeapRoomTier::size)
+                    .description("Evicted rooms kept in the off-heap tier")
+                    .register(meterRegistry);
+            Gauge.builder("quizbattle.rooms.offheap.bytes", offHeap, OffHeapRoomTier::usedBytes)
+                    .baseUnit("bytes")
+                    .description("Off-heap memory used by evicted rooms")
+                    .register(meterRegistry);
+        }
+    }
+
+    private static Counter evictedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("quizbattle.rooms.evicted")
+                .tag("reason", reason)
+                .description("Rooms evicted from memory")
+                .register(meterRegistry);
+    }
+
+    private static Counter rehydratedCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("quizbattle.rooms.rehydrated")
+                .tag("source", source)
+                .description("Evicted rooms restored on access")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long intervalMs = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Комната в памяти (обращение продлевает ее жизнь)
+     */
+    public Room get(String code) {
+        Room room = rooms.get(code.toUpperCase());
+        if (room != null) {
+            room.touch();
+        }
+        return room;
+    }
+
+    /**
+     * Подписаться на уход комнат из памяти (вытеснение или удаление)
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Находится ли комната в памяти (без продления ее жизни)
+     */
+    public boolean isLive(String code) {
+        return rooms.containsKey(code.toUpperCase());
+    }
+
+    /**
+     * Занят ли код комнатой в памяти или в off-heap уровне
+     */
+    public boolean contains(String code) {
+        String key = code.toUpperCase();
+        return rooms.containsKey(key) || (offHeap != null && offHeap.contains(key));
+    }
+
+    public void put(Room room) {
+        String key = room.getCode().toUpperCase();
+        room.touch();
+        if (offHeap != null) {
+            offHeap.remove(key);
+        }
+        rooms.put(key, room);
+        enforceCapacity();
+    }
+
+    /**
+     * Восстановить вытесненную комнату: из off-heap уровня, иначе из снимка в БД.
+     * onRestored вызывается до того, как комната станет видна другим потокам.
+     * Загрузка и доигрывание журнала идут вне карты комнат (не держат блокировку ее сегмента
+     * и не закрепляют поток-носитель виртуального потока); одновременные запросы той же
+     * комнаты ждут одно восстановление
+     *
+     * @return восстановленная (или уже активная) комната, null если восстанавливать нечего
+     */
+    public Room restore(String code, Consumer<Room> onRestored) {
+        String key = code.toUpperCase();
+        Room live = rooms.get(key);
+        if (live != null) {
+            return live;
+        }
+        Restore restore = new Restore();
+        Restore inFlight = restoring.putIfAbsent(key, restore);
+        if (inFlight != null) {
+            return awaitRestore(inFlight);
+        }
+        try {
+            Room room = load(key, onRestored);
+            restore.result.complete(room);
+            return room;
+        } catch (RuntimeException e) {
+            restore.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            restoring.remove(key, restore);
+        }
+    }
+
+    private Room load(String key, Consumer<Room> onRestored) {
+        // Комнату могли вернуть в память между проверкой и регистрацией восстановления
+        Room live = rooms.get(key);
+        if (live != null) {
+            return live;
+        }
+        Optional<Room> fromOffHeap = offHeap != null ? offHeap.take(key) : Optional.empty();
+        Room loaded = fromOffHeap.or(() -> snapshotStore.load(key)).orElse(null);
+        if (loaded == null) {
+            return null;
+        }
+        loaded.touch();
+        onRestored.accept(loaded);
+        Room existing = rooms.putIfAbsent(key, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        Restore restore = restoring.get(key);
+        if (restore != null && restore.removed) {
+            // Комнату удалили, пока она загружалась
+            if (rooms.remove(key, loaded)) {
+                removed(key);
+            }
+            return null;
+        }
+        (fromOffHeap.isPresent() ? rehydratedOffHeap : rehydratedSnapshot).increment();
+        enforceCapacity();
+        return loaded;
+    }
+
+    private static Room awaitRestore(Restore restore) {
+        try {
+            return restore.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public Room remove(String code) {
+        String key = code.toUpperCase();
+        // Отмечаем идущее восстановление до удаления из карты, чтобы оно не вернуло комнату
+        Restore restore = restoring.get(key);
+        if (restore != null) {
+            restore.removed = true;
+        }
+        if (offHeap != null) {
+            offHeap.remove(key);
+        }
+        Room removed = rooms.remove(key);
+        if (removed != null) {
+            removed(key);
+        }
+        return removed;
+    }
+
+    public Collection<Room> values() {
+        return rooms.values();
+    }
+
+    public Set<String> codes() {
+        return Set.copyOf(rooms.keySet());
+    }
+
+    private void sweep() {
+        try {
+            long cutoff = System.currentTimeMillis() - idleTtl.toMillis();
+            int evicted = 0;
+            for (Room room : rooms.values()) {
+                if (room.getLastActivityAt() < cutoff && evict(room, evictedIdle)) {
+                    evicted++;
+                }
+            }
+            if (evicted > 0) {
+                log.info("Evicted {} idle rooms, {} rooms live", evicted, rooms.size());
+            }
+            enforceCapacity();
+        } catch (RuntimeException e) {
+            log.warn("Room eviction sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Вытеснить самые давно использованные комнаты сверх max-live
+     */
+    private void enforceCapacity() {
+        if (rooms.size() <= maxLive) {
+            return;
+        }
+        synchronized (evictionLock) {
+            int excess = rooms.size() - maxLive;
+            if (excess <= 0) {
+                return;
+            }
+            List<Room> candidates = new ArrayList<>(rooms.values());
+            candidates.sort(Comparator.comparingLong(Room::getLastActivityAt));
+            for (Room room : candidates) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (evict(room, evictedCapacity)) {
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private boolean evict(Room room, Counter counter) {
+        // Комната с запланированным определением победителя нужна таймеру - не трогаем
+        ScheduledFuture<?> pending = room.getWinnerDeterminationTask();
+        if (pending != null && !pending.isDone()) {
+            return false;
+        }
+        String key = room.getCode().toUpperCase();
+        if (!rooms.remove(key, room)) {
+            return false;
+        }
+        if (!room.isSynthetic()) {
+            if (offHeap != null) {
+                offHeap.put(key, room);
+            }
+            snapshotStore.evicted(key);
+        }
+        counter.increment();
+        removed(key);
+        return true;
+    }
+
+    /**
+     * Идущее восстановление комнаты
+     */
+    private static final class Restore {
+        private final CompletableFuture<Room> result = new CompletableFuture<>();
+        private volatile boolean removed;
+    }
+
+    private void removed(String key) {
+        for (Consumer<String> listener : removalListeners) {
+            try {
+                listener.accept(key);
+            } catch (RuntimeException e) {
+                log.warn("Room removal listener failed for {}: {}", key, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.dto.UserResponse;
+import com.quizbattle.model.entity.RosterChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Список пользователей (ростер) в памяти.
+ * Ростер строится одним запросом при первом обращении и хранится вместе с готовым JSON
+ * и хэшем версии (ETag) до изменения любого пользователя или команды.
+ * Повторные загрузки страницы входа отвечаются из памяти или 304 без обращения к БД
+ */
+@Service
+public class RosterService {
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    // Растет при каждой инвалидации: ростер, построенный до изменения, не устанавливается
+    private final AtomicLong generation = new AtomicLong();
+    // Блокировка вместо synchronized: ожидание БД не закрепляет виртуальный поток за носителем
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private volatile Roster roster;
+
+    public RosterService(UserService userService, ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Текущий ростер (строится при первом обращении после изменения)
+     */
+    public Roster getRoster() {
+        Roster current = roster;
+        if (current != null) {
+            return current;
+        }
+        buildLock.lock();
+        try {
+            current = roster;
+            if (current != null) {
+                return current;
+            }
+            long expectedGeneration = generation.get();
+            current = build(userService.getAllUserResponses());
+            if (generation.get() == expectedGeneration) {
+                roster = current;
+            }
+            return current;
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    /**
+     * Пользователь или команда изменены через JPA: ростер сбрасывается после коммита.
+     * Сброс до коммита позволил бы параллельному запросу заново построить ростер из еще старых данных
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRosterChanged(RosterChangedEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Сбросить ростер (пользователь или команда изменились)
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        roster = null;
+    }
+
+    private Roster build(List<UserResponse> users) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(Map.of("users", users));
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            String version = HexFormat.of().formatHex(digest, 0, 12);
+            return new Roster(Collections.unmodifiableList(users), body, version);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to build user roster", e);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок ростера: пользователи по возрастанию id, готовый JSON и версия
+     */
+    public static final class Roster {
+        private final List<UserResponse> users;
+        private final byte[] body;
+        private final String version;
+
+        private Roster(List<UserResponse> users, byte[] body, String version) {
+            this.users = users;
+            this.body = body;
+            this.version = version;
+        }
+
+        public List<UserResponse> getUsers() {
+            return users;
+        }
+
+        /**
+         * Сериализованный ответ {"users": [...]} со всеми пользователями
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getETag() {
+            return "\"" + version + "\"";
+        }
+
+        /**
+         * Страница пользователей с id больше afterId (keyset по id)
+         */
+        public List<UserResponse> page(Long afterId, int limit) {
+            int from = 0;
+            if (afterId != null) {
+                int low = 0;
+                int high = users.size();
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (users.get(mid).getId() <= afterId) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                from = low;
+            }
+            return users.subList(from, Math.min(users.size(), from + limit));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Потоковая выгрузка истории раундов (NDJSON или CSV).
+ * История читается порциями по chunk-size раундов (keyset по ended_at, id), каждая порция -
+ * в своей короткой read-only транзакции через курсор с фиксированным fetch size,
+ * строки пишутся в ответ сразу по мере чтения. Память не зависит от объема истории,
+ * а длинных транзакций, мешающих записи истории, не возникает
+ */
+@Service
+public class RoundHistoryExporter {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final String[] COLUMNS = {
+            "round_id", "room_code", "started_at", "ended_at", "winner_player_id", "winner_team_id",
+            "chapter", "part", "position", "player_id", "team_id", "client_timestamp",
+            "server_receive_time", "reaction_ms"
+    };
+
+    private static final String CHUNK_SQL =
+            "WITH chunk AS (" +
+            "  SELECT id, room_code, started_at, ended_at, winner_player_id, winner_team_id, chapter, part" +
+            "  FROM round_history WHERE (ended_at, id) > (?, ?) %s" +
+            "  ORDER BY ended_at, id LIMIT ?" +
+            ") " +
+            "SELECT c.id, c.room_code, c.started_at, c.ended_at, c.winner_player_id, c.winner_team_id, " +
+            "c.chapter, c.part, p.position, p.player_id, p.team_id, p.client_timestamp, " +
+            "p.server_receive_time, p.reaction_ms " +
+            "FROM chunk c LEFT JOIN round_press_history p ON p.round_id = c.id " +
+            "ORDER BY c.ended_at, c.id, p.position";
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    @Value("${quizbattle.history.export.chunk-size:1000}")
+    private int chunkSize;
+
+    public RoundHistoryExporter(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                @Value("${quizbattle.history.export.fetch-size:500}") int fetchSize) {
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Выгрузить историю (всю или одной комнаты) в поток
+     */
+    public void export(String roomCode, Format format, OutputStream out) throws IOException {
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+        writer.start();
+
+        Timestamp lastEndedAt = new Timestamp(0);
+        UUID lastId = new UUID(0, 0);
+        while (true) {
+            ChunkCursor cursor = exportChunk(roomCode, lastEndedAt, lastId, writer);
+            writer.flush();
+            if (cursor.rounds < chunkSize) {
+                break;
+            }
+            lastEndedAt = cursor.lastEndedAt;
+            lastId = cursor.lastId;
+        }
+        writer.finish();
+    }
+
+    private ChunkCursor exportChunk(String roomCode, Timestamp afterEndedAt, UUID afterId, RowWriter writer) {
+        List<Object> params = new ArrayList<>();
+        params.add(afterEndedAt);
+        params.add(afterId);
+        String filter = "";
+        if (roomCode != null && !roomCode.isBlank()) {
+            filter = "AND room_code = ?";
+            params.add(roomCode.toUpperCase());
+        }
+        params.add(chunkSize);
+        String sql = String.format(CHUNK_SQL, filter);
+
+        ChunkCursor cursor = new ChunkCursor();
+        readOnlyTransaction.executeWithoutResult(status ->
+                cursorTemplate.query(sql, rs -> {
+                    UUID id = rs.getObject(1, UUID.class);
+                    if (!id.equals(cursor.lastId)) {
+                        cursor.rounds++;
+                        cursor.lastId = id;
+                        cursor.lastEndedAt = rs.getTimestamp(4);
+                    }
+                    try {
+                        writer.write(rs);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, params.toArray()));
+        return cursor;
+    }
+
+    private static class ChunkCursor {
+        private int rounds;
+        private UUID lastId;
+        private Timestamp lastEndedAt;
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+        void write(ResultSet rs) throws IOException, SQLException;
+        void flush() throws IOException;
+        void finish() throws IOException;
+    }
+
+    private class NdjsonRowWriter implements RowWriter {
+        private final OutputStream out;
+        private JsonGenerator generator;
+
+        private NdjsonRowWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start() throws IOException {
+            generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws IOException, SQLException {
+            generator.writeStartObject();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                Object value = rs.getObject(i + 1);
+                generator.writeFieldName(COLUMNS[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.longValue());
+                } else if (value instanceof Timestamp timestamp) {
+                    generator.writeString(timestamp.toInstant().toString());
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer out;
+
+        private CsvRowWriter(OutputStream out) {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void start() throws IOException {
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws IOException, SQLException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = rs.getObject(i + 1);
+                if (value instanceof Timestamp timestamp) {
+                    out.write(timestamp.toInstant().toString());
+                } else if (value != null) {
+                    out.write(escape(value.toString()));
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
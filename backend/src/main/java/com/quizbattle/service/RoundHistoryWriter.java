@@ -0,0 +1,171 @@
+package com.quizbattle.service;
+
+import com.quizbattle.model.CompletedRound;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная запись истории раундов.
+ * Игровые потоки кладут завершенные раунды в ограниченную очередь (без ожидания),
+ * отдельный поток выбирает их пачками и пишет в БД JDBC batch-вставками в одной транзакции
+ */
+@Service
+public class RoundHistoryWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RoundHistoryWriter.class);
+
+    private static final String INSERT_ROUND_SQL =
+            "INSERT INTO round_history (id, room_code, started_at, ended_at, winner_player_id, " +
+            "winner_team_id, chapter, part, press_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PRESS_SQL =
+            "INSERT INTO round_press_history (round_id, position, player_id, team_id, client_timestamp, " +
+            "server_receive_time, reaction_ms) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong droppedRounds = new AtomicLong();
+
+    @Value("${quizbattle.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quizbattle.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${quizbattle.history.batch-size:200}")
+    private int batchSize;
+
+    private BlockingQueue<CompletedRound> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    public RoundHistoryWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        worker = new Thread(this::run, "round-history-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Поставить раунд в очередь на запись. Никогда не блокирует:
+     * при переполненной очереди раунд отбрасывается и учитывается в счетчике
+     */
+    public void submit(CompletedRound round) {
+        if (queue == null) {
+            return;
+        }
+        if (!queue.offer(round)) {
+            long dropped = droppedRounds.incrementAndGet();
+            if (dropped == 1 || dropped % 1000 == 0) {
+                log.warn("Round history queue is full, dropped {} rounds so far", dropped);
+            }
+        }
+    }
+
+    public long getDroppedRounds() {
+        return droppedRounds.get();
+    }
+
+    private void run() {
+        List<CompletedRound> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CompletedRound first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // Останавливаемся: дописываем то, что осталось в очереди
+                    queue.drainTo(batch);
+                    write(batch);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to write {} rounds to history: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<CompletedRound> rounds) {
+        if (rounds.isEmpty()) {
+            return;
+        }
+        List<Object[]> roundRows = new ArrayList<>(rounds.size());
+        List<Object[]> pressRows = new ArrayList<>();
+        for (CompletedRound round : rounds) {
+            roundRows.add(new Object[]{
+                    round.getId(),
+                    round.getRoomCode(),
+                    new Timestamp(round.getStartedAt()),
+                    new Timestamp(round.getEndedAt()),
+                    round.getWinnerId(),
+                    round.getWinnerTeamId(),
+                    round.getChapter(),
+                    round.getPart(),
+                    round.getPresses().size()
+            });
+            for (CompletedRound.Press press : round.getPresses()) {
+                pressRows.add(new Object[]{
+                        round.getId(),
+                        press.getPosition(),
+                        press.getPlayerId(),
+                        press.getTeamId(),
+                        press.getClientTimestamp(),
+                        press.getServerReceiveTime(),
+                        press.getReactionMs()
+                });
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_ROUND_SQL, roundRows);
+            if (!pressRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_PRESS_SQL, pressRows);
+            }
+        });
+    }
+}
@@ -0,0 +1,520 @@
+package com.quizbattle.service;
+
+import com.quizbattle.model.JournalEventType;
+import com.quizbattle.model.JournalRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Журнал событий раундов в memory-mapped сегментах с фиксированным бинарным форматом записи.
+ *
+ * Формат сегмента: заголовок 64 байта (magic, размер записи, номер первой записи),
+ * далее записи по 64 байта (little-endian):
+ * <pre>
+ *  0  long  заголовок: код события (старший байт) | порядковый номер записи
+ *  8  long  код комнаты (до 8 ASCII символов)
+ * 16  long  версия состояния комнаты после события
+ * 24  long  id игрока (-1, если нет)
+ * 32  long  clientTimestamp
+ * 40  long  время сервера (мс)
+ * 48  int   позиция нажатия / номер главы
+ * 52  int   номер части главы
+ * 56  long  резерв
+ * </pre>
+ * Каждый слот сегмента занимает ровно один писатель (слот выдается атомарным счетчиком),
+ * запись публикуется последним release-store заголовка, поэтому добавление на горячем пути -
+ * это несколько записей в отображенный буфер без блокировок и форматирования строк.
+ *
+ * Слоты выдаются нескольким потокам, поэтому порядок слотов не совпадает с порядком версий,
+ * а в записанных данных бывают пустые слоты: писатель, задержавшийся на смене сегмента,
+ * еще не опубликовал запись, или процесс упал между выдачей слота и публикацией. Читатель
+ * проходит все выданные слоты и пропускает пустые; запись с неверным заголовком (чужой номер
+ * или неизвестный код события) считается оборванной и тоже пропускается.
+ *
+ * Для закрытых сегментов при первом чтении строится индекс (диапазон слотов и максимальная версия
+ * каждой комнаты), поэтому восстановление комнаты читает только сегменты и диапазоны с ее событиями.
+ * Индекс кешируется, только когда в сегменте не осталось незавершенных записей. После рестарта
+ * запись продолжается в последний сегмент за последней записью, если в нем есть место. Закрытые
+ * сегменты, последняя запись которых старше quizbattle.journal.retention, удаляются: их события
+ * уже покрыты снимками комнат
+ */
+@Service
+public class RoundJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(RoundJournal.class);
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+    private static final int MAGIC = 0x51424A31; // "QBJ1"
+    private static final long SEQUENCE_MASK = 0x00FFFFFFFFFFFFFFL;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Value("${quizbattle.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quizbattle.journal.dir:data/journal}")
+    private String directory;
+
+    @Value("${quizbattle.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${quizbattle.journal.retention:PT6H}")
+    private Duration retention;
+
+    @Value("${quizbattle.journal.retention-check-interval:PT10M}")
+    private Duration retentionCheckInterval;
+
+    private Path journalDir;
+    private int segmentCapacity;
+    private volatile Segment current;
+    // Индексы закрытых сегментов без незавершенных записей (такой сегмент больше не меняется)
+    private final Map<Path, SegmentIndex> indexes = new ConcurrentHashMap<>();
+    // Закрытые в этом процессе сегменты, в которые еще могут дописывать задержавшиеся писатели
+    private final Map<Path, Segment> sealing = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "journal-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            journalDir = Paths.get(directory);
+            Files.createDirectories(journalDir);
+            segmentCapacity = (int) (((long) segmentSizeMb * 1024 * 1024 - HEADER_SIZE) / RECORD_SIZE);
+            current = openCurrent();
+            log.info("Round journal opened in {}, next sequence {}", journalDir.toAbsolutePath(),
+                    current.baseSequence + current.next.get());
+        } catch (IOException e) {
+            log.warn("Round journal disabled: {}", e.getMessage());
+            current = null;
+            return;
+        }
+        long intervalMs = retentionCheckInterval.toMillis();
+        cleaner.scheduleWithFixedDelay(this::dropExpiredSegments, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        cleaner.shutdownNow();
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+            current = null;
+        }
+    }
+
+    /**
+     * Добавить событие в журнал. Не блокирует (кроме редкой смены сегмента)
+     */
+    public void append(JournalEventType type, String roomCode, long roomVersion, String playerId,
+                       long clientTimestamp, long serverTime, int arg1, int arg2) {
+        Segment segment = current;
+        if (segment == null) {
+            return;
+        }
+        while (true) {
+            segment.writers.increment();
+            try {
+                int slot = segment.next.getAndIncrement();
+                if (slot < segment.capacity) {
+                    segment.write(slot, type, packCode(roomCode), roomVersion, parsePlayerId(playerId),
+                            clientTimestamp, serverTime, arg1, arg2);
+                    return;
+                }
+            } finally {
+                segment.writers.decrement();
+            }
+            segment = roll(segment);
+            if (segment == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Прочитать все события комнаты с версией больше указанной в порядке версий
+     * (порядок слотов с ним не совпадает: слоты занимают разные потоки)
+     */
+    public void replay(String roomCode, long afterVersion, Consumer<JournalRecord> consumer) {
+        List<JournalRecord> records = new ArrayList<>();
+        forEachRecord(packCode(roomCode), afterVersion, records::add);
+        records.sort(Comparator.comparingLong(JournalRecord::getRoomVersion)
+                .thenComparingLong(JournalRecord::getSequence));
+        records.forEach(consumer);
+    }
+
+    /**
+     * Прочитать весь журнал (аудит и офлайн-анализ)
+     */
+    public void forEachRecord(Consumer<JournalRecord> consumer) {
+        forEachRecord(0, Long.MIN_VALUE, consumer);
+    }
+
+    private void forEachRecord(long packedCode, long afterVersion, Consumer<JournalRecord> consumer) {
+        Segment live = current;
+        if (live == null) {
+            return;
+        }
+        for (Path path : listSegments()) {
+            Segment open = path.equals(live.path) ? live : sealing.get(path);
+            if (open != null && (open == live || open.writers.sum() != 0)) {
+                // Открытый или только что закрытый сегмент: только выданные слоты, незавершенные записи пропускаются
+                int written = Math.min(open.next.get(), open.capacity);
+                readRange(open.buffer, open.baseSequence, 0, written, packedCode, afterVersion, consumer);
+                continue;
+            }
+            SegmentIndex index = index(path);
+            if (index == null) {
+                continue;
+            }
+            int from = 0;
+            int to = index.used;
+            if (packedCode != 0) {
+                RoomRange range = index.rooms.get(packedCode);
+                if (range == null || range.maxVersion <= afterVersion) {
+                    continue;
+                }
+                from = range.firstSlot;
+                to = range.lastSlot + 1;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                readRange(buffer, index.baseSequence, from, to, packedCode, afterVersion, consumer);
+            } catch (IOException e) {
+                log.warn("Failed to read journal segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private static void readRange(ByteBuffer buffer, long baseSequence, int from, int to, long packedCode,
+                                  long afterVersion, Consumer<JournalRecord> consumer) {
+        for (int slot = from; slot < to; slot++) {
+            int offset = HEADER_SIZE + slot * RECORD_SIZE;
+            long header = (long) LONGS.getAcquire(buffer, offset);
+            // Пустой слот (запись не опубликована или оборвана) или оборванная запись
+            if (!isValid(header, baseSequence, slot)) {
+                continue;
+            }
+            if (packedCode != 0 && buffer.getLong(offset + 8) != packedCode) {
+                continue;
+            }
+            long version = buffer.getLong(offset + 16);
+            if (version <= afterVersion) {
+                continue;
+            }
+            JournalEventType type = JournalEventType.fromCode((int) (header >>> 56));
+            long playerId = buffer.getLong(offset + 24);
+            consumer.accept(new JournalRecord(
+                    header & SEQUENCE_MASK,
+                    type,
+                    unpackCode(buffer.getLong(offset + 8)),
+                    version,
+                    playerId >= 0 ? Long.toString(playerId) : null,
+                    buffer.getLong(offset + 32),
+                    buffer.getLong(offset + 40),
+                    buffer.getInt(offset + 48),
+                    buffer.getInt(offset + 52)));
+        }
+    }
+
+    private SegmentIndex index(Path path) {
+        SegmentIndex index = indexes.get(path);
+        if (index != null) {
+            return index;
+        }
+        // Пока в закрытый сегмент дописывает задержавшийся писатель, индекс не окончательный.
+        // Писатели проверяются до построения индекса, чтобы он точно включал их записи
+        Segment sealed = sealing.get(path);
+        boolean settled = sealed == null || sealed.writers.sum() == 0;
+        try {
+            index = buildIndex(path);
+        } catch (IOException e) {
+            log.warn("Failed to index journal segment {}: {}", path, e.getMessage());
+            return null;
+        }
+        Segment live = current;
+        // Сегмент, ставший открытым после начала чтения, еще меняется - его индекс не кешируется
+        if (index == null || !settled || (live != null && live.path.equals(path))) {
+            return index;
+        }
+        if (sealed != null) {
+            sealing.remove(path, sealed);
+        }
+        indexes.putIfAbsent(path, index);
+        return index;
+    }
+
+    /**
+     * Заголовок опубликованной целой записи: известный код события и номер, совпадающий со слотом
+     */
+    private static boolean isValid(long header, long baseSequence, int slot) {
+        return header != 0
+                && (header & SEQUENCE_MASK) == ((baseSequence + slot) & SEQUENCE_MASK)
+                && JournalEventType.fromCode((int) (header >>> 56)) != null;
+    }
+
+    /**
+     * Прочитать все слоты сегмента, пропуская пустые и оборванные: конец данных (слот за последней
+     * записью), время последней записи и диапазоны слотов комнат. null, если файл не является сегментом журнала
+     */
+    private static SegmentIndex buildIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                return null;
+            }
+            int capacity = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+            long baseSequence = buffer.getLong(8);
+            Map<Long, RoomRange> rooms = new HashMap<>();
+            long lastServerTime = 0;
+            int used = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = HEADER_SIZE + slot * RECORD_SIZE;
+                if (!isValid(buffer.getLong(offset), baseSequence, slot)) {
+                    continue;
+                }
+                long packedCode = buffer.getLong(offset + 8);
+                long version = buffer.getLong(offset + 16);
+                int recordSlot = slot;
+                rooms.compute(packedCode, (code, range) -> range == null
+                        ? new RoomRange(recordSlot, recordSlot, version)
+                        : new RoomRange(range.firstSlot, recordSlot, Math.max(range.maxVersion, version)));
+                lastServerTime = Math.max(lastServerTime, buffer.getLong(offset + 40));
+                used = slot + 1;
+            }
+            return new SegmentIndex(baseSequence, capacity, used, lastServerTime, rooms);
+        }
+    }
+
+    /**
+     * Удалить закрытые сегменты, все записи которых старше retention
+     */
+    private void dropExpiredSegments() {
+        Segment live = current;
+        if (live == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        try {
+            for (Path path : listSegments()) {
+                live = current;
+                if (live == null || path.equals(live.path)) {
+                    continue;
+                }
+                SegmentIndex index = index(path);
+                if (index == null || index.lastServerTime >= cutoff) {
+                    continue;
+                }
+                Files.deleteIfExists(path);
+                indexes.remove(path);
+                sealing.remove(path);
+                log.info("Dropped expired journal segment {}", path.getFileName());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Journal retention failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized Segment roll(Segment full) {
+        Segment segment = current;
+        if (segment != full) {
+            return segment; // Сегмент уже сменил другой поток
+        }
+        try {
+            sealing.put(full.path, full);
+            full.buffer.force();
+            current = openSegment(full.baseSequence + full.capacity, 0);
+        } catch (IOException e) {
+            log.warn("Round journal disabled, failed to open next segment: {}", e.getMessage());
+            current = null;
+        }
+        return current;
+    }
+
+    /**
+     * Сегмент для записи после старта: последний, если в нем есть свободные слоты, иначе новый
+     */
+    private Segment openCurrent() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            return openSegment(1, 0);
+        }
+        Path last = segments.get(segments.size() - 1);
+        SegmentIndex index = buildIndex(last);
+        if (index == null) {
+            return openSegment(1, 0);
+        }
+        if (index.capacity == segmentCapacity && index.used < segmentCapacity) {
+            return openSegment(index.baseSequence, index.used);
+        }
+        return openSegment(index.baseSequence + index.used, 0);
+    }
+
+    private Segment openSegment(long baseSequence, int used) throws IOException {
+        Path path = journalDir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = HEADER_SIZE + (long) segmentCapacity * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, RECORD_SIZE);
+            buffer.putLong(8, baseSequence);
+            return new Segment(path, buffer, baseSequence, segmentCapacity, used);
+        }
+    }
+
+    private List<Path> listSegments() {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .forEach(segments::add);
+        } catch (IOException e) {
+            log.warn("Failed to list journal segments: {}", e.getMessage());
+        }
+        return segments;
+    }
+
+    private static long packCode(String code) {
+        long packed = 0;
+        int length = Math.min(code.length(), 8);
+        for (int i = 0; i < length; i++) {
+            packed |= (long) (code.charAt(i) & 0xFF) << (8 * i);
+        }
+        return packed;
+    }
+
+    private static String unpackCode(long packed) {
+        StringBuilder code = new StringBuilder(8);
+        for (int i = 0; i < 8; i++) {
+            char c = (char) ((packed >>> (8 * i)) & 0xFF);
+            if (c == 0) {
+                break;
+            }
+            code.append(c);
+        }
+        return code.toString();
+    }
+
+    private static long parsePlayerId(String playerId) {
+        if (playerId == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(playerId);
+        } catch (NumberFormatException e) {
+            return -1; // Гостевые игроки без числового id
+        }
+    }
+
+    /**
+     * Отображенный в память сегмент журнала
+     */
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final long baseSequence;
+        private final int capacity;
+        private final AtomicInteger next;
+        // Писатели, занимающие или заполняющие слот этого сегмента
+        private final LongAdder writers = new LongAdder();
+
+        private Segment(Path path, MappedByteBuffer buffer, long baseSequence, int capacity, int used) {
+            this.path = path;
+            this.buffer = buffer;
+            this.baseSequence = baseSequence;
+            this.capacity = capacity;
+            this.next = new AtomicInteger(used);
+        }
+
+        private void write(int slot, JournalEventType type, long packedCode, long roomVersion, long playerId,
+                           long clientTimestamp, long serverTime, int arg1, int arg2) {
+            int offset = HEADER_SIZE + slot * RECORD_SIZE;
+            buffer.putLong(offset + 8, packedCode);
+            buffer.putLong(offset + 16, roomVersion);
+            buffer.putLong(offset + 24, playerId);
+            buffer.putLong(offset + 32, clientTimestamp);
+            buffer.putLong(offset + 40, serverTime);
+            buffer.putInt(offset + 48, arg1);
+            buffer.putInt(offset + 52, arg2);
+            long header = ((long) type.getCode() << 56) | ((baseSequence + slot) & SEQUENCE_MASK);
+            LONGS.setRelease(buffer, offset, header);
+        }
+    }
+
+    /**
+     * Индекс закрытого сегмента: слоты с записями лежат в [0, used), диапазоны слотов каждой комнаты
+     */
+    private static final class SegmentIndex {
+        private final long baseSequence;
+        private final int capacity;
+        private final int used;
+        private final long lastServerTime;
+        private final Map<Long, RoomRange> rooms;
+
+        private SegmentIndex(long baseSequence, int capacity, int used, long lastServerTime, Map<Long, RoomRange> rooms) {
+            this.baseSequence = baseSequence;
+            this.capacity = capacity;
+            this.used = used;
+            this.lastServerTime = lastServerTime;
+            this.rooms = rooms;
+        }
+    }
+
+    private static final class RoomRange {
+        private final int firstSlot;
+        private final int lastSlot;
+        private final long maxVersion;
+
+        private RoomRange(int firstSlot, int lastSlot, long maxVersion) {
+            this.firstSlot = firstSlot;
+            this.lastSlot = lastSlot;
+            this.maxVersion = maxVersion;
+        }
+    }
+}
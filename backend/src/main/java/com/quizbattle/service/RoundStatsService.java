@@ -0,0 +1,325 @@
+package com.quizbattle.service;
+
+import com.quizbattle.model.CompletedRound;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Статистика времени реакции и побед по игрокам и командам.
+ * Считается инкрементально в памяти по мере завершения раундов, поэтому
+ * панель ведущего не выполняет агрегирующих SQL-запросов во время игры.
+ *
+ * Статистика комнат в памяти достраивается из round_history один раз, при первом чтении после
+ * рестарта или восстановления комнаты; раунды, уже учтенные в памяти, при этом пропускаются.
+ * При вытеснении комнаты ее статистика переходит в ограниченный кеш архивных комнат
+ * (quizbattle.stats.archived-ttl, quizbattle.stats.max-archived); статистика комнаты не в памяти
+ * строится по истории не чаще раза за archived-ttl
+ */
+@Service
+public class RoundStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(RoundStatsService.class);
+
+    private static final String HISTORY_SQL =
+            "SELECT h.id, h.winner_player_id, h.winner_team_id, p.player_id, p.team_id, p.reaction_ms " +
+            "FROM round_history h LEFT JOIN round_press_history p ON p.round_id = h.id " +
+            "WHERE h.room_code = ? ORDER BY h.ended_at, h.id, p.position";
+
+    private final Map<String, RoomStats> rooms = new ConcurrentHashMap<>();
+    // Статистика комнат не в памяти: код -> статистика и срок ее годности
+    private final Map<String, Archived> archived = new ConcurrentHashMap<>();
+    private final RoomStore roomStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final long archivedTtlNanos;
+    private final int maxArchived;
+
+    public RoundStatsService(RoomStore roomStore,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${quizbattle.stats.archived-ttl:PT5M}") Duration archivedTtl,
+                             @Value("${quizbattle.stats.max-archived:1000}") int maxArchived) {
+        this.roomStore = roomStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.archivedTtlNanos = archivedTtl.toNanos();
+        this.maxArchived = Math.max(1, maxArchived);
+    }
+
+    @PostConstruct
+    public void start() {
+        roomStore.addRemovalListener(this::roomRemoved);
+    }
+
+    /**
+     * Учесть завершенный раунд
+     */
+    public void record(CompletedRound round) {
+        String key = round.getRoomCode().toUpperCase();
+        archived.remove(key);
+        RoomStats stats = rooms.computeIfAbsent(key, code -> new RoomStats());
+        stats.record(round.getId(), round.getWinnerId(), round.getWinnerTeamId(), round.getPresses());
+    }
+
+    /**
+     * Статистика игроков комнаты: число раундов и показатели каждого игрока
+     */
+    public Map<String, Object> getPlayerStats(String roomCode) {
+        RoomStats stats = statsFor(roomCode);
+        synchronized (stats) {
+            List<Map<String, Object>> players = new ArrayList<>();
+            stats.players.forEach((playerId, reaction) -> {
+                Map<String, Object> entry = reaction.toMap();
+                entry.put("playerId", playerId);
+                players.add(entry);
+            });
+            return report(roomCode, stats.rounds, "players", players);
+        }
+    }
+
+    /**
+     * Статистика команд комнаты: число раундов и показатели каждой команды
+     */
+    public Map<String, Object> getTeamStats(String roomCode) {
+        RoomStats stats = statsFor(roomCode);
+        synchronized (stats) {
+            List<Map<String, Object>> teams = new ArrayList<>();
+            stats.teams.forEach((teamId, reaction) -> {
+                Map<String, Object> entry = reaction.toMap();
+                entry.put("teamId", teamId);
+                teams.add(entry);
+            });
+            return report(roomCode, stats.rounds, "teams", teams);
+        }
+    }
+
+    private static Map<String, Object> report(String roomCode, int rounds, String name, List<Map<String, Object>> entries) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("roomCode", roomCode.toUpperCase());
+        report.put("rounds", rounds);
+        report.put(name, entries);
+        return report;
+    }
+
+    /**
+     * Комната покинула память: ее статистика, уже достроенная из истории, переходит в архивный кеш
+     */
+    private void roomRemoved(String key) {
+        RoomStats stats = rooms.remove(key);
+        if (stats != null && stats.historyLoaded) {
+            archive(key, stats);
+        }
+    }
+
+    /**
+     * Статистика комнаты, достроенная из истории. Для комнаты не в памяти берется из архивного
+     * кеша, а по истории строится, только если ее там нет или срок годности истек
+     */
+    private RoomStats statsFor(String roomCode) {
+        String key = roomCode.toUpperCase();
+        RoomStats stats = rooms.get(key);
+        if (stats == null) {
+            if (!roomStore.isLive(key)) {
+                return archivedStats(key);
+            }
+            archived.remove(key);
+            stats = rooms.computeIfAbsent(key, code -> new RoomStats());
+            if (!roomStore.isLive(key)) {
+                // Комнату вытеснили между проверками
+                rooms.remove(key, stats);
+            }
+        }
+        if (!stats.historyLoaded) {
+            loadHistory(key, stats);
+        }
+        return stats;
+    }
+
+    private RoomStats archivedStats(String key) {
+        Archived entry = archived.get(key);
+        if (entry != null) {
+            if (System.nanoTime() - entry.until < 0) {
+                return entry.stats;
+            }
+            archived.remove(key, entry);
+        }
+        RoomStats stats = new RoomStats();
+        loadHistory(key, stats);
+        if (stats.historyLoaded) {
+            archive(key, stats);
+        }
+        return stats;
+    }
+
+    private void archive(String key, RoomStats stats) {
+        if (archived.size() >= maxArchived) {
+            long now = System.nanoTime();
+            archived.values().removeIf(entry -> now - entry.until >= 0);
+            if (archived.size() >= maxArchived) {
+                archived.clear();
+            }
+        }
+        archived.put(key, new Archived(stats, System.nanoTime() + archivedTtlNanos));
+    }
+
+    private void loadHistory(String key, RoomStats stats) {
+        Map<UUID, HistoryRound> rounds = new LinkedHashMap<>();
+        try {
+            jdbcTemplate.query(HISTORY_SQL, rs -> {
+                UUID id = rs.getObject(1, UUID.class);
+                HistoryRound round = rounds.get(id);
+                if (round == null) {
+                    String winnerId = rs.getString(2);
+                    int winnerTeamId = rs.getInt(3);
+                    round = new HistoryRound(winnerId, rs.wasNull() ? null : winnerTeamId);
+                    rounds.put(id, round);
+                }
+                String playerId = rs.getString(4);
+                if (playerId != null) {
+                    int teamId = rs.getInt(5);
+                    Integer team = rs.wasNull() ? null : teamId;
+                    round.presses.add(new CompletedRound.Press(playerId, team, round.presses.size() + 1,
+                            0, 0, rs.getLong(6)));
+                }
+            }, key);
+        } catch (RuntimeException e) {
+            // Попробуем при следующем чтении; пока отдаем то, что накоплено в памяти
+            log.warn("Failed to load round history for room {}: {}", key, e.getMessage());
+            return;
+        }
+        stats.mergeHistory(rounds);
+    }
+
+    /**
+     * Статистика комнаты не в памяти и срок ее годности (System.nanoTime)
+     */
+    private record Archived(RoomStats stats, long until) {}
+
+    /**
+     * Раунд из round_history
+     */
+    private static final class HistoryRound {
+        private final String winnerId;
+        private final Integer winnerTeamId;
+        private final List<CompletedRound.Press> presses = new ArrayList<>();
+
+        private HistoryRound(String winnerId, Integer winnerTeamId) {
+            this.winnerId = winnerId;
+            this.winnerTeamId = winnerTeamId;
+        }
+    }
+
+    /**
+     * Статистика одной комнаты
+     */
+    private static class RoomStats {
+        private final Map<String, ReactionStats> players = new ConcurrentHashMap<>();
+        private final Map<Integer, ReactionStats> teams = new ConcurrentHashMap<>();
+        // Раунды, учтенные в памяти до загрузки истории (чтобы не посчитать их дважды)
+        private final Set<UUID> recordedRounds = new HashSet<>();
+        private volatile int rounds;
+        private volatile boolean historyLoaded;
+
+        private synchronized void record(UUID id, String winnerId, Integer winnerTeamId,
+                                         List<CompletedRound.Press> presses) {
+            if (!historyLoaded) {
+                recordedRounds.add(id);
+            }
+            rounds++;
+            for (CompletedRound.Press press : presses) {
+                players.computeIfAbsent(press.getPlayerId(), playerId -> new ReactionStats()).addPress(press.getReactionMs());
+                if (press.getTeamId() != null) {
+                    teams.computeIfAbsent(press.getTeamId(), teamId -> new ReactionStats()).addPress(press.getReactionMs());
+                }
+            }
+            if (winnerId != null) {
+                players.computeIfAbsent(winnerId, playerId -> new ReactionStats()).addWin();
+                if (winnerTeamId != null) {
+                    teams.computeIfAbsent(winnerTeamId, teamId -> new ReactionStats()).addWin();
+                }
+            }
+        }
+
+        private synchronized void mergeHistory(Map<UUID, HistoryRound> history) {
+            if (historyLoaded) {
+                return;
+            }
+            history.forEach((id, round) -> {
+                if (!recordedRounds.contains(id)) {
+                    record(id, round.winnerId, round.winnerTeamId, round.presses);
+                }
+            });
+            historyLoaded = true;
+            recordedRounds.clear();
+        }
+    }
+
+    /**
+     * Гистограмма времени реакции с шагом 10 мс (до 10 секунд) и счетчик побед.
+     * Перцентили считаются по гистограмме за O(число корзин) без хранения отдельных значений
+     */
+    private static class ReactionStats {
+        private static final int BUCKET_MS = 10;
+        private static final int BUCKETS = 1000;
+
+        private final long[] histogram = new long[BUCKETS + 1]; // Последняя корзина - все, что дольше 10 с
+        private long presses;
+        private long wins;
+        private long totalMs;
+        private long minMs = Long.MAX_VALUE;
+        private long maxMs;
+
+        private synchronized void addPress(long reactionMs) {
+            int bucket = (int) Math.min(reactionMs / BUCKET_MS, BUCKETS);
+            histogram[bucket]++;
+            presses++;
+            totalMs += reactionMs;
+            minMs = Math.min(minMs, reactionMs);
+            maxMs = Math.max(maxMs, reactionMs);
+        }
+
+        private synchronized void addWin() {
+            wins++;
+        }
+
+        private synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("presses", presses);
+            map.put("wins", wins);
+            map.put("minMs", presses > 0 ? minMs : null);
+            map.put("meanMs", presses > 0 ? totalMs / presses : null);
+            map.put("p50Ms", percentile(0.50));
+            map.put("p90Ms", percentile(0.90));
+            map.put("p99Ms", percentile(0.99));
+            map.put("maxMs", presses > 0 ? maxMs : null);
+            return map;
+        }
+
+        private Long percentile(double quantile) {
+            if (presses == 0) {
+                return null;
+            }
+            long rank = (long) Math.ceil(quantile * presses);
+            long seen = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    // Верхняя граница корзины, но не больше реального максимума
+                    return Math.min((long) (i + 1) * BUCKET_MS, maxMs);
+                }
+            }
+            return maxMs;
+        }
+    }
+}
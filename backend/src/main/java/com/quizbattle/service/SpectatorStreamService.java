@@ -0,0 +1,455 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.model.GameMessage;
+import com.quizbattle.model.Room;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поток событий комнаты для зрителей по Server-Sent Events (GET /api/room/{code}/events).
+ *
+ * Зрители (экраны, публичная страница) не держат STOMP-сессию: сообщения, уже сериализованные
+ * для /topic/room/{code}, перехватываются в brokerChannel, один раз оформляются в SSE-кадр
+ * и этот же массив байт пишется всем зрителям комнаты в пуле потоков spectator-writer.
+ * Запись неблокирующая (Servlet WriteListener): медленный зритель не занимает поток пула.
+ * У каждого зрителя ограниченная очередь: при переполнении очередь сбрасывается и зритель
+ * получает актуальный ROOM_STATE, а зритель, чей сокет не принимает данные дольше stall-timeout,
+ * отключается (EventSource сам переподключится). Каналы игроков это не затрагивает
+ */
+@Service
+public class SpectatorStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(SpectatorStreamService.class);
+
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room/";
+
+    private static final String EVENT_STREAM = MediaType.TEXT_EVENT_STREAM_VALUE + ";charset=UTF-8";
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RETRY = "retry: 2000\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRAMES_PER_DRAIN = 16; // Затем очередь зрителя уступает поток другим
+
+    private final GameService gameService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, RoomStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger spectatorCount = new AtomicInteger();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "spectator-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxSpectators;
+    private final int queueSize;
+    private final Duration timeout;
+    private final Duration heartbeatInterval;
+    private final Duration stallTimeout;
+
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    public SpectatorStreamService(GameService gameService,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${quizbattle.spectators.max:2000}") int maxSpectators,
+                                  @Value("${quizbattle.spectators.queue-size:32}") int queueSize,
+                                  @Value("${quizbattle.spectators.writer-threads:2}") int writerThreads,
+                                  @Value("${quizbattle.spectators.timeout:PT30M}") Duration timeout,
+                                  @Value("${quizbattle.spectators.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+                                  @Value("${quizbattle.spectators.stall-timeout:PT10S}") Duration stallTimeout) {
+        this.gameService = gameService;
+        this.objectMapper = objectMapper;
+        this.maxSpectators = maxSpectators;
+        this.queueSize = Math.max(1, queueSize);
+        this.timeout = timeout;
+        this.heartbeatInterval = heartbeatInterval;
+        this.stallTimeout = stallTimeout;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), r -> {
+            Thread thread = new Thread(r, "spectator-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("quizbattle.spectators.connected", spectatorCount, AtomicInteger::get)
+                .description("Spectators connected over SSE")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("quizbattle.spectators.coalesced")
+                .description("Spectator queue overflows replaced by a fresh room state")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("quizbattle.spectators.dropped")
+                .description("Spectators disconnected for not reading their stream")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long intervalMs = heartbeatInterval.toMillis();
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        writers.shutdownNow();
+        streams.values().forEach(stream -> stream.spectators.forEach(Spectator::close));
+    }
+
+    /**
+     * Подключить зрителя к комнате: ответ переводится в асинхронный режим с неблокирующей записью,
+     * первым кадром идет текущий ROOM_STATE
+     *
+     * @throws IllegalStateException если зрителей слишком много
+     */
+    public void subscribe(Room room, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (spectatorCount.incrementAndGet() > maxSpectators) {
+            spectatorCount.decrementAndGet();
+            throw new IllegalStateException("Слишком много зрителей");
+        }
+        String key = room.getCode().toUpperCase();
+        AsyncContext async;
+        ServletOutputStream out;
+        try {
+            response.setContentType(EVENT_STREAM);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.setHeader("X-Accel-Buffering", "no"); // Без буферизации в nginx
+            async = request.startAsync();
+            async.setTimeout(timeout.toMillis());
+            out = response.getOutputStream();
+        } catch (IOException | RuntimeException e) {
+            spectatorCount.decrementAndGet();
+            throw e;
+        }
+        Spectator[] created = new Spectator[1];
+        // Добавление под блокировкой ключа: последний уходящий зритель не удалит поток комнаты
+        streams.compute(key, (k, existing) -> {
+            RoomStream stream = existing != null ? existing : new RoomStream(k);
+            created[0] = new Spectator(stream, async, out);
+            stream.spectators.add(created[0]);
+            return stream;
+        });
+        Spectator spectator = created[0];
+        async.addListener(spectator);
+        spectator.enqueue(RETRY);
+        spectator.resync();
+        // Первый onWritePossible контейнер вызовет после выхода из обработчика запроса
+        out.setWriteListener(spectator);
+    }
+
+    /**
+     * Сообщение, отправленное в brokerChannel (вызывается для каждого сообщения брокера)
+     */
+    public void published(String destination, Object payload) {
+        if (destination == null || !destination.startsWith(ROOM_TOPIC_PREFIX) || !(payload instanceof byte[] json)) {
+            return;
+        }
+        RoomStream stream = streams.get(destination.substring(ROOM_TOPIC_PREFIX.length()).toUpperCase());
+        if (stream == null || stream.spectators.isEmpty()) {
+            return;
+        }
+        byte[] frame = frame(json);
+        for (Spectator spectator : stream.spectators) {
+            spectator.enqueue(frame);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            long stalledBefore = System.currentTimeMillis() - stallTimeout.toMillis();
+            for (RoomStream stream : streams.values()) {
+                for (Spectator spectator : stream.spectators) {
+                    if (spectator.isStalled(stalledBefore)) {
+                        dropped.increment();
+                        log.debug("Dropping stalled spectator of room {}", stream.code);
+                        spectator.close();
+                    } else {
+                        spectator.enqueue(HEARTBEAT);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Spectator heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * SSE-кадр с JSON сообщения (многострочный JSON разбивается на несколько строк data:)
+     */
+    private static byte[] frame(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length + 8);
+        out.writeBytes("data: ".getBytes(StandardCharsets.US_ASCII));
+        for (byte b : json) {
+            if (b == '\n') {
+                out.writeBytes("\ndata: ".getBytes(StandardCharsets.US_ASCII));
+            } else if (b != '\r') {
+                out.write(b);
+            }
+        }
+        out.writeBytes("\n\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    /**
+     * Зрители одной комнаты и кадр ее последнего состояния (общий для всех, кому нужна пересинхронизация)
+     */
+    private final class RoomStream {
+        private final String code;
+        private final List<Spectator> spectators = new CopyOnWriteArrayList<>();
+        private long stateVersion = -1;
+        private byte[] stateFrame;
+
+        private RoomStream(String code) {
+            this.code = code;
+        }
+
+        /**
+         * ROOM_STATE комнаты; null, если комната закрыта
+         */
+        private synchronized byte[] stateFrame() {
+            Room room = gameService.getRoom(code);
+            if (room == null) {
+                return null;
+            }
+            long version = room.getStateVersion();
+            if (stateFrame == null || version != stateVersion) {
+                try {
+                    stateFrame = frame(objectMapper.writeValueAsBytes(GameMessage.roomState(room)));
+                    stateVersion = version;
+                } catch (JsonProcessingException e) {
+                    log.warn("Failed to serialize state of room {} for spectators: {}", code, e.getMessage());
+                    return null;
+                }
+            }
+            return stateFrame;
+        }
+    }
+
+    /**
+     * Зритель: очередь кадров и неблокирующая запись в ответ (WriteListener).
+     * Пишем, только пока isReady(); если сокет заполнен, поток-писатель освобождается,
+     * а запись продолжается по onWritePossible. Запись и завершение идут под монитором
+     * зрителя, поэтому не пересекаются
+     */
+    private final class Spectator implements WriteListener, AsyncListener {
+        private final RoomStream stream;
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private boolean resync; // Вместо пропущенных кадров отправить актуальное состояние
+        private boolean scheduled;
+        private boolean writable; // Контейнер разрешил запись, и isReady() с тех пор не возвращал false
+        private boolean unflushed;
+        private boolean closed;
+        private boolean completed;
+        private long blockedSince; // Когда сокет перестал принимать данные (0 - не заблокирован)
+
+        private Spectator(RoomStream stream, AsyncContext async, ServletOutputStream out) {
+            this.stream = stream;
+            this.async = async;
+            this.out = out;
+        }
+
+        private synchronized void enqueue(byte[] frame) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= queueSize) {
+                // Зритель не успевает: пропущенное заменит один свежий ROOM_STATE
+                queue.clear();
+                resync = true;
+                coalesced.increment();
+            } else {
+                queue.add(frame);
+            }
+            schedule();
+        }
+
+        private synchronized void resync() {
+            resync = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled && writable && !closed) {
+                scheduled = true;
+                writers.execute(this::drain);
+            }
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            writable = true;
+            blockedSince = 0;
+            schedule();
+        }
+
+        private void drain() {
+            try {
+                for (int i = 0; i < FRAMES_PER_DRAIN; i++) {
+                    byte[] frame;
+                    boolean state;
+                    synchronized (this) {
+                        if (closed || !ready()) {
+                            return;
+                        }
+                        state = resync;
+                        frame = state ? null : queue.poll();
+                        if (!state && frame == null) {
+                            if (unflushed) {
+                                unflushed = false;
+                                out.flush();
+                                continue;
+                            }
+                            scheduled = false;
+                            return;
+                        }
+                        resync = false;
+                    }
+                    if (state) {
+                        frame = stream.stateFrame();
+                        if (frame == null) {
+                            // Комната закрыта - поток зрителя завершается
+                            close();
+                            return;
+                        }
+                    }
+                    synchronized (this) {
+                        if (closed) {
+                            return;
+                        }
+                        if (!ready()) {
+                            // Кадр допишем по onWritePossible
+                            if (state) {
+                                resync = true;
+                            } else {
+                                queue.addFirst(frame);
+                            }
+                            return;
+                        }
+                        out.write(frame);
+                        unflushed = true;
+                    }
+                }
+                synchronized (this) {
+                    scheduled = false;
+                    schedule();
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+
+        /**
+         * Можно ли писать; если нет, контейнер вызовет onWritePossible, когда сокет освободится
+         */
+        private boolean ready() {
+            if (out.isReady()) {
+                return true;
+            }
+            writable = false;
+            scheduled = false;
+            if (blockedSince == 0) {
+                blockedSince = System.currentTimeMillis();
+            }
+            return false;
+        }
+
+        private synchronized boolean isStalled(long stalledBefore) {
+            return blockedSince != 0 && blockedSince < stalledBefore;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            detach();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        /**
+         * Убрать зрителя из комнаты (повторные вызовы ничего не делают)
+         */
+        private void detach() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                queue.clear();
+            }
+            spectatorCount.decrementAndGet();
+            stream.spectators.remove(this);
+            streams.computeIfPresent(stream.code, (code, current) -> current.spectators.isEmpty() ? null : current);
+        }
+
+        /**
+         * Отключить зрителя и завершить ответ. Запись неблокирующая, поэтому завершение не ждет
+         * зависшего клиента и не занимает поток; соединение с ним контейнер закроет по тайм-ауту записи
+         */
+        private void close() {
+            detach();
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+                try {
+                    async.complete();
+                } catch (RuntimeException e) {
+                    log.debug("Failed to complete spectator stream of room {}: {}", stream.code, e.getMessage());
+                }
+            }
+        }
+    }
+}
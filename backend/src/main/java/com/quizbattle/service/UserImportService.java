@@ -0,0 +1,406 @@
+package com.quizbattle.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizbattle.dto.UserImportResponse;
+import com.quizbattle.dto.UserImportRow;
+import com.quizbattle.model.entity.Team;
+import com.quizbattle.model.entity.User;
+import com.quizbattle.model.entity.UserRole;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Потоковый импорт пользователей и их команд из CSV или NDJSON (одна запись на строку).
+ * Файл читается построчно, строки копятся порциями по chunk-size и записываются
+ * JDBC batch upsert-ом (по username) в отдельной транзакции на порцию, поэтому память
+ * не зависит от размера файла. Команды разрешаются по названию через карту в памяти,
+ * недостающие создаются. Id берутся блоками из тех же пулов последовательностей, что и у Hibernate
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    public enum Format { CSV, NDJSON }
+
+    // Совпадает с allocationSize последовательностей users_seq и teams_seq в сущностях
+    private static final int ID_BLOCK = 50;
+
+    private static final String UPSERT_USER_SQL =
+            "INSERT INTO users (id, username, password, full_name, nickname, avatar, role, team_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (username) DO UPDATE SET " +
+            "password = COALESCE(CAST(? AS varchar), users.password), " +
+            "full_name = COALESCE(CAST(? AS varchar), users.full_name), " +
+            "nickname = COALESCE(CAST(? AS varchar), users.nickname), " +
+            "avatar = COALESCE(CAST(? AS varchar), users.avatar), " +
+            "role = COALESCE(CAST(? AS varchar), users.role), " +
+            "team_id = COALESCE(CAST(? AS bigint), users.team_id)";
+
+    // Явные типы параметров: иначе JdbcTemplate запрашивает метаданные параметра для каждого null
+    private static final int[] UPSERT_USER_TYPES = {
+            Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.BIGINT, Types.TIMESTAMP,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT
+    };
+
+    private static final String UPSERT_TEAM_SQL =
+            "INSERT INTO teams (id, name, created_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+    private final RosterService rosterService;
+
+    @Value("${quizbattle.users.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${quizbattle.users.import.default-password:password123}")
+    private String defaultPassword;
+
+    @Value("${quizbattle.users.import.max-errors:100}")
+    private int maxErrors;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             EntityManagerFactory entityManagerFactory,
+                             RosterService rosterService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+        this.rosterService = rosterService;
+    }
+
+    /**
+     * Импортировать пользователей из потока. Строки с ошибками пропускаются и перечисляются
+     * в ответе, уже записанные порции при ошибке БД не откатываются
+     */
+    public UserImportResponse importUsers(InputStream in, Format format) throws IOException {
+        UserImportResponse response = new UserImportResponse();
+        ImportContext context = new ImportContext(response);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Map<String, UserImportRow> chunk = new LinkedHashMap<>();
+        CsvHeader csvHeader = null;
+
+        try {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (format == Format.CSV && csvHeader == null) {
+                    csvHeader = CsvHeader.parse(line);
+                    continue;
+                }
+                response.setRowsRead(response.getRowsRead() + 1);
+                try {
+                    UserImportRow row = format == Format.CSV ? csvHeader.toRow(line) : parseJson(line);
+                    normalize(row);
+                    // Повтор username в одной порции: побеждает последняя строка
+                    // (в одном multi-row upsert строка не может обновляться дважды)
+                    chunk.remove(row.getUsername());
+                    chunk.put(row.getUsername(), row);
+                } catch (IllegalArgumentException e) {
+                    context.reject(lineNumber, e.getMessage());
+                    continue;
+                }
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, context);
+                }
+            }
+            if (format == Format.CSV && csvHeader == null) {
+                throw new IllegalArgumentException("Пустой CSV: нет строки заголовка");
+            }
+            writeChunk(chunk, context);
+        } finally {
+            if (response.getImported() > 0 || !response.getTeamsCreated().isEmpty()) {
+                evictCaches();
+            }
+        }
+        log.info("User import finished: {} rows read, {} imported, {} rejected, {} teams created",
+                response.getRowsRead(), response.getImported(), response.getRejected(),
+                response.getTeamsCreated().size());
+        return response;
+    }
+
+    private void writeChunk(Map<String, UserImportRow> chunk, ImportContext context) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<Object[]> args = new ArrayList<>(chunk.size());
+                for (UserImportRow row : chunk.values()) {
+                    Long teamId = row.getTeam() != null ? context.resolveTeam(row.getTeam(), now) : null;
+                    args.add(new Object[]{
+                            context.userIds.next(),
+                            row.getUsername(),
+                            row.getPassword() != null ? row.getPassword() : defaultPassword,
+                            row.getFullName() != null ? row.getFullName() : row.getUsername(),
+                            row.getNickname(),
+                            row.getAvatar(),
+                            row.getRole() != null ? row.getRole() : UserRole.PLAYER.name(),
+                            teamId,
+                            now,
+                            row.getPassword(),
+                            row.getFullName(),
+                            row.getNickname(),
+                            row.getAvatar(),
+                            row.getRole(),
+                            teamId
+                    });
+                }
+                jdbcTemplate.batchUpdate(UPSERT_USER_SQL, args, UPSERT_USER_TYPES);
+            });
+            context.commitTeams();
+            context.response.setImported(context.response.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            context.rollbackTeams();
+            throw e;
+        } finally {
+            chunk.clear();
+        }
+    }
+
+    private UserImportRow parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, UserImportRow.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("неверный JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Проверка и нормализация строки (пустые значения -> null, роль в верхнем регистре)
+     */
+    private static void normalize(UserImportRow row) {
+        row.setUsername(trimToNull(row.getUsername()));
+        row.setPassword(trimToNull(row.getPassword()));
+        row.setFullName(trimToNull(row.getFullName()));
+        row.setNickname(trimToNull(row.getNickname()));
+        row.setAvatar(trimToNull(row.getAvatar()));
+        row.setRole(trimToNull(row.getRole()));
+        row.setTeam(trimToNull(row.getTeam()));
+
+        if (row.getUsername() == null) {
+            throw new IllegalArgumentException("не указан username");
+        }
+        checkLength("username", row.getUsername(), 50);
+        checkLength("fullName", row.getFullName(), 100);
+        checkLength("nickname", row.getNickname(), 50);
+        checkLength("avatar", row.getAvatar(), 500);
+        checkLength("team", row.getTeam(), 100);
+        if (row.getRole() != null) {
+            try {
+                row.setRole(UserRole.valueOf(row.getRole().toUpperCase(Locale.ROOT)).name());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("неизвестная роль " + row.getRole());
+            }
+        }
+    }
+
+    private static void checkLength(String field, String value, int max) {
+        if (value != null && value.length() > max) {
+            throw new IllegalArgumentException(field + " длиннее " + max + " символов");
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Записи шли мимо Hibernate: сбрасываем кэш второго уровня и ростер
+     */
+    private void evictCaches() {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(User.class);
+        cache.evictNaturalIdData(User.class);
+        cache.evictEntityData(Team.class);
+        cache.evictNaturalIdData(Team.class);
+        rosterService.invalidate();
+    }
+
+    /**
+     * Состояние одного импорта: карта команд, блоки id и итоги
+     */
+    private class ImportContext {
+        private final UserImportResponse response;
+        private final Map<String, Long> teams = new HashMap<>();
+        private final Map<String, Long> pendingTeams = new HashMap<>(); // Созданы в текущей порции
+        private final IdBlock userIds = new IdBlock("users_seq");
+        private final IdBlock teamIds = new IdBlock("teams_seq");
+
+        private ImportContext(UserImportResponse response) {
+            this.response = response;
+            jdbcTemplate.query("SELECT id, name FROM teams",
+                    rs -> { teams.put(rs.getString(2), rs.getLong(1)); });
+        }
+
+        private Long resolveTeam(String name, LocalDateTime now) {
+            Long id = teams.get(name);
+            if (id == null) {
+                id = pendingTeams.get(name);
+            }
+            if (id == null) {
+                id = jdbcTemplate.queryForObject(UPSERT_TEAM_SQL, Long.class, teamIds.next(), name, now);
+                pendingTeams.put(name, id);
+            }
+            return id;
+        }
+
+        private void commitTeams() {
+            teams.putAll(pendingTeams);
+            response.getTeamsCreated().addAll(pendingTeams.keySet());
+            pendingTeams.clear();
+        }
+
+        private void rollbackTeams() {
+            pendingTeams.clear();
+        }
+
+        private void reject(long lineNumber, String message) {
+            response.setRejected(response.getRejected() + 1);
+            if (response.getErrors().size() < maxErrors) {
+                response.getErrors().add("Строка " + lineNumber + ": " + message);
+            }
+        }
+    }
+
+    /**
+     * Блок id из последовательности с шагом ID_BLOCK (как pooled-оптимизатор Hibernate:
+     * nextval - верхняя граница блока)
+     */
+    private class IdBlock {
+        private final String sql;
+        private long next = 1;
+        private long hi = 0;
+
+        private IdBlock(String sequence) {
+            this.sql = "SELECT nextval('" + sequence + "')";
+        }
+
+        private long next() {
+            if (next > hi) {
+                hi = jdbcTemplate.queryForObject(sql, Long.class);
+                next = hi - ID_BLOCK + 1;
+            }
+            return next++;
+        }
+    }
+
+    /**
+     * Заголовок CSV: позиции известных колонок (регистр и подчеркивания не важны)
+     */
+    private static final class CsvHeader {
+        private final Map<String, Integer> columns;
+
+        private CsvHeader(Map<String, Integer> columns) {
+            this.columns = columns;
+        }
+
+        private static CsvHeader parse(String line) {
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = splitCsv(line);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT);
+                if (name.equals("teamname")) {
+                    name = "team";
+                }
+                columns.putIfAbsent(name, i);
+            }
+            if (!columns.containsKey("username")) {
+                throw new IllegalArgumentException("В CSV нет колонки username");
+            }
+            return new CsvHeader(columns);
+        }
+
+        private UserImportRow toRow(String line) {
+            List<String> values = splitCsv(line);
+            UserImportRow row = new UserImportRow();
+            row.setUsername(value(values, "username"));
+            row.setPassword(value(values, "password"));
+            row.setFullName(value(values, "fullname"));
+            row.setNickname(value(values, "nickname"));
+            row.setAvatar(value(values, "avatar"));
+            row.setRole(value(values, "role"));
+            row.setTeam(value(values, "team"));
+            return row;
+        }
+
+        private String value(List<String> values, String column) {
+            Integer index = columns.get(column);
+            return index != null && index < values.size() ? values.get(index) : null;
+        }
+
+        /**
+         * Разбор строки CSV (RFC 4180 в пределах одной строки: кавычки и "" внутри них)
+         */
+        private static List<String> splitCsv(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("незакрытая кавычка");
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
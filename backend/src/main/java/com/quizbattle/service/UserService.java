@@ -1,15 +1,24 @@
 package com.quizbattle.service;
 
+import com.quizbattle.dto.BatchInvitationResponse;
+import com.quizbattle.dto.InvitationResponse;
+import com.quizbattle.dto.UserResponse;
 import com.quizbattle.model.entity.RoomEntity;
 import com.quizbattle.model.entity.RoomInvitation;
 import com.quizbattle.model.entity.User;
 import com.quizbattle.repository.RoomInvitationRepository;
 import com.quizbattle.repository.RoomRepository;
 import com.quizbattle.repository.UserRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -43,6 +52,7 @@ public class UserService {
     /**
      * Авторизация пользователя (проверка username и password)
      */
+    @Transactional(readOnly = true)
     public Optional<User> authenticateUser(String username, String password) {
         Optional<User> userOpt = userRepository.findByUsername(username);
         if (userOpt.isPresent()) {
@@ -58,6 +68,7 @@ public class UserService {
     /**
      * Получить пользователя по ID
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
@@ -65,6 +76,7 @@ public class UserService {
     /**
      * Получить пользователя по username
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -72,10 +84,19 @@ public class UserService {
     /**
      * Получить всех пользователей
      */
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAllWithTeams();
     }
     
+    /**
+     * Получить всех пользователей в виде DTO (одним запросом, без загрузки сущностей)
+     */
+    @Transactional(readOnly = true)
+    public List<UserResponse> getAllUserResponses() {
+        return userRepository.findAllResponses();
+    }
+    
     /**
      * Создать приглашение в комнату
      */
@@ -101,6 +122,8 @@ public class UserService {
             if (invitation.getStatus() == RoomInvitation.InvitationStatus.REJECTED ||
                 invitation.getStatus() == RoomInvitation.InvitationStatus.EXPIRED) {
                 invitation.setStatus(RoomInvitation.InvitationStatus.PENDING);
+                // Отсчет срока истечения начинается заново
+                invitation.setUpdatedAt(LocalDateTime.now());
                 return invitationRepository.save(invitation);
             }
             throw new IllegalArgumentException("Приглашение уже существует");
@@ -111,13 +134,76 @@ public class UserService {
     }
     
     /**
-     * Получить список приглашений пользователя
+     * Пригласить в комнату сразу несколько пользователей.
+     * Комната проверяется один раз, существующие приглашения комнаты и приглашаемые
+     * пользователи загружаются одним запросом каждый, новые приглашения вставляются пачкой
      */
-    public List<RoomInvitation> getPendingInvitationsForUser(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
-        return invitationRepository.findByInvitedUserAndStatus(
-                user, RoomInvitation.InvitationStatus.PENDING);
+    @Transactional
+    public BatchInvitationResponse createInvitations(String roomCode, List<Long> invitedUserIds, Long hostUserId) {
+        RoomEntity room = roomRepository.findByCode(roomCode)
+                .orElseThrow(() -> new IllegalArgumentException("Комната не найдена"));
+        
+        if (!room.getHostUser().getId().equals(hostUserId)) {
+            throw new IllegalArgumentException("Только хост может отправлять приглашения");
+        }
+        
+        BatchInvitationResponse response = new BatchInvitationResponse();
+        if (invitedUserIds == null || invitedUserIds.isEmpty()) {
+            return response;
+        }
+        
+        // Существующие приглашения комнаты по id приглашенного (id прокси не требует загрузки User)
+        Map<Long, RoomInvitation> existingByUserId = new HashMap<>();
+        for (RoomInvitation invitation : invitationRepository.findByRoom(room)) {
+            existingByUserId.put(invitation.getInvitedUser().getId(), invitation);
+        }
+        
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : userRepository.findAllById(new LinkedHashSet<>(invitedUserIds))) {
+            usersById.put(user.getId(), user);
+        }
+        
+        List<RoomInvitation> toSave = new ArrayList<>();
+        for (Long userId : new LinkedHashSet<>(invitedUserIds)) {
+            User invitedUser = usersById.get(userId);
+            if (invitedUser == null) {
+                response.getUnknownUserIds().add(userId);
+                continue;
+            }
+            
+            RoomInvitation existing = existingByUserId.get(userId);
+            if (existing == null) {
+                toSave.add(new RoomInvitation(room, invitedUser));
+            } else if (existing.getStatus() == RoomInvitation.InvitationStatus.REJECTED ||
+                       existing.getStatus() == RoomInvitation.InvitationStatus.EXPIRED) {
+                existing.setStatus(RoomInvitation.InvitationStatus.PENDING);
+                existing.setUpdatedAt(LocalDateTime.now());
+                toSave.add(existing);
+            } else {
+                response.getSkippedUserIds().add(userId);
+            }
+        }
+        
+        // Идентификаторы из пулов последовательностей, поэтому Hibernate отправляет вставки JDBC-пачками
+        for (RoomInvitation invitation : invitationRepository.saveAll(toSave)) {
+            response.getInvitations().add(new InvitationResponse(invitation));
+        }
+        return response;
+    }
+    
+    /**
+     * Получить страницу ожидающих приглашений пользователя (keyset-пагинация по id приглашения)
+     */
+    @Transactional(readOnly = true)
+    public List<InvitationResponse> getPendingInvitationsForUser(Long userId, Long afterId, int limit) {
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Пользователь не найден");
+        }
+        return invitationRepository.findPageByInvitedUserId(
+                userId,
+                RoomInvitation.InvitationStatus.PENDING,
+                afterId != null ? afterId : 0L,
+                PageRequest.of(0, limit));
     }
     
     /**
@@ -161,12 +247,14 @@ public class UserService {
     }
     
     /**
-     * Получить приглашения для комнаты
+     * Получить приглашения для комнаты (DTO-проекция одним запросом)
      */
-    public List<RoomInvitation> getInvitationsForRoom(String roomCode) {
-        RoomEntity room = roomRepository.findByCode(roomCode)
-                .orElseThrow(() -> new IllegalArgumentException("Комната не найдена"));
-        return invitationRepository.findByRoom(room);
+    @Transactional(readOnly = true)
+    public List<InvitationResponse> getInvitationsForRoom(String roomCode) {
+        if (!roomRepository.existsByCode(roomCode)) {
+            throw new IllegalArgumentException("Комната не найдена");
+        }
+        return invitationRepository.findResponsesByRoomCode(roomCode);
     }
     
     /**
@@ -180,6 +268,7 @@ public class UserService {
     /**
      * Получить комнату по коду
      */
+    @Transactional(readOnly = true)
     public Optional<RoomEntity> getRoomByCode(String code) {
         return roomRepository.findByCode(code);
     }
@@ -187,6 +276,7 @@ public class UserService {
     /**
      * Получить последнюю комнату админа (самую новую)
      */
+    @Transactional(readOnly = true)
     public Optional<RoomEntity> getLatestRoomByHostUserId(Long hostUserId) {
         return userRepository.findById(hostUserId)
                 .flatMap(hostUser -> {
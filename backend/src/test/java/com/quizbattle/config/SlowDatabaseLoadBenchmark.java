@@ -0,0 +1,245 @@
+package com.quizbattle.config;
+
+import com.quizbattle.QuizBattleApplication;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузка при искусственно замедленном Postgres в режимах quizbattle.execution.mode platform и virtual.
+ * Приложение подключается к БД через {@link LatencyProxy}, который после старта задерживает каждый ответ БД.
+ * CLIENTS потоков запрашивают приглашения пользователя (запросы в БД), параллельно раз в 100 мс
+ * проверяется /actuator/health/liveness без обращения к БД: в режиме platform проверка ждет
+ * освобождения потока Tomcat, в режиме virtual - нет.
+ * Не входит в обычный прогон тестов (имя не подходит под шаблоны surefire), запуск:
+ * mvn test -Dtest=SlowDatabaseLoadBenchmark [-Dbenchmark.db-latency-ms=100 -Dbenchmark.clients=300 -Dbenchmark.seconds=10]
+ * Postgres берется из -Dbenchmark.db-host, -Dbenchmark.db-port (localhost:5432), база и пользователь - из application.properties
+ */
+class SlowDatabaseLoadBenchmark {
+
+    private static final String DB_HOST = System.getProperty("benchmark.db-host", "localhost");
+    private static final int DB_PORT = Integer.getInteger("benchmark.db-port", 5432);
+    private static final Duration DB_LATENCY = Duration.ofMillis(Integer.getInteger("benchmark.db-latency-ms", 100));
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 300);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+    private static final Duration PROBE_INTERVAL = Duration.ofMillis(100);
+
+    private static final Pattern FIRST_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    @ParameterizedTest
+    @EnumSource(ExecutionMode.class)
+    void throughputWithSlowDatabase(ExecutionMode mode) throws Exception {
+        try (LatencyProxy proxy = new LatencyProxy(DB_HOST, DB_PORT);
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(QuizBattleApplication.class)
+                     .run("--server.port=0",
+                             "--spring.datasource.url=jdbc:postgresql://127.0.0.1:" + proxy.getPort() + "/quizbattle",
+                             "--quizbattle.execution.mode=" + mode.name().toLowerCase(),
+                             "--quizbattle.journal.enabled=false",
+                             "--quizbattle.snapshots.enabled=false",
+                             "--quizbattle.warmup.enabled=false")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            String dbUrl = baseUrl + "/api/users/" + anyUserId(baseUrl) + "/invitations";
+
+            // Старт и загрузка данных без задержки, замедляется только нагрузка
+            proxy.setLatency(DB_LATENCY);
+
+            LongAdder dbRequests = new LongAdder();
+            LongAdder dbErrors = new LongAdder();
+            long deadline = System.nanoTime() + DURATION.toNanos();
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.add(Thread.ofPlatform().daemon().name("load-client-" + i).start(() -> {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(dbUrl)).build();
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            (response.statusCode() == 200 ? dbRequests : dbErrors).increment();
+                        } catch (IOException e) {
+                            dbErrors.increment();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }));
+            }
+
+            List<Long> probeMillis = new ArrayList<>();
+            HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/liveness")).build();
+            while (System.nanoTime() < deadline) {
+                long started = System.nanoTime();
+                HttpResponse<Void> response = client.send(probe, HttpResponse.BodyHandlers.discarding());
+                assertThat(response.statusCode()).isEqualTo(200);
+                long elapsed = System.nanoTime() - started;
+                probeMillis.add(TimeUnit.NANOSECONDS.toMillis(elapsed));
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, PROBE_INTERVAL.toNanos() - elapsed));
+            }
+            for (Thread thread : clients) {
+                thread.join();
+            }
+
+            Collections.sort(probeMillis);
+            System.out.printf("%s: %.0f req/s on %s (%d errors), liveness probe median %d ms, p95 %d ms (n=%d), "
+                            + "db latency %d ms, %d clients%n",
+                    mode, dbRequests.sum() / (double) DURATION.toSeconds(), dbUrl, dbErrors.sum(),
+                    percentile(probeMillis, 50), percentile(probeMillis, 95), probeMillis.size(),
+                    DB_LATENCY.toMillis(), CLIENTS);
+            assertThat(dbRequests.sum()).isPositive();
+            assertThat(probeMillis).isNotEmpty();
+        }
+    }
+
+    private String anyUserId(String baseUrl) throws Exception {
+        HttpResponse<String> users = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/users")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = FIRST_ID.matcher(users.body());
+        assertThat(matcher.find()).as("no users in %s", users.body()).isTrue();
+        return matcher.group(1);
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percent / 100));
+    }
+
+    /**
+     * TCP-прокси к Postgres: данные от БД к клиенту отдаются не раньше чем через latency после получения.
+     * Задержка накладывается на каждый ответ, а не на соединение - как у удаленной или перегруженной БД
+     */
+    static final class LatencyProxy implements Closeable {
+
+        private record Chunk(byte[] data, long releaseAt) {
+        }
+
+        private final ServerSocket server;
+        private final String upstreamHost;
+        private final int upstreamPort;
+        private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+        private volatile long latencyNanos;
+
+        LatencyProxy(String upstreamHost, int upstreamPort) throws IOException {
+            this.upstreamHost = upstreamHost;
+            this.upstreamPort = upstreamPort;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            // Платформенные потоки: виртуальный планировщик настраивается при старте приложения в режиме virtual
+            Thread.ofPlatform().daemon().name("latency-proxy-accept").start(this::acceptLoop);
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        void setLatency(Duration latency) {
+            this.latencyNanos = latency.toNanos();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket downstream = server.accept();
+                    Socket upstream = new Socket(upstreamHost, upstreamPort);
+                    downstream.setTcpNoDelay(true);
+                    upstream.setTcpNoDelay(true);
+                    sockets.add(downstream);
+                    sockets.add(upstream);
+                    Thread.ofPlatform().daemon().name("latency-proxy-up").start(() -> copy(downstream, upstream));
+                    BlockingQueue<Chunk> delayed = new LinkedBlockingQueue<>();
+                    Thread.ofPlatform().daemon().name("latency-proxy-down").start(() -> delay(upstream, delayed));
+                    Thread.ofPlatform().daemon().name("latency-proxy-release").start(() -> release(delayed, downstream));
+                } catch (IOException e) {
+                    // Прокси закрыт
+                }
+            }
+        }
+
+        private void copy(Socket from, Socket to) {
+            byte[] buffer = new byte[16384];
+            try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Соединение закрыто с одной из сторон
+            }
+            closeQuietly(from, to);
+        }
+
+        private void delay(Socket from, BlockingQueue<Chunk> delayed) {
+            byte[] buffer = new byte[16384];
+            try (InputStream in = from.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    delayed.add(new Chunk(Arrays.copyOf(buffer, read), System.nanoTime() + latencyNanos));
+                }
+            } catch (IOException e) {
+                // Соединение закрыто с одной из сторон
+            }
+            delayed.add(new Chunk(null, System.nanoTime() + latencyNanos));
+        }
+
+        private void release(BlockingQueue<Chunk> delayed, Socket to) {
+            try (OutputStream out = to.getOutputStream()) {
+                while (true) {
+                    Chunk chunk = delayed.take();
+                    TimeUnit.NANOSECONDS.sleep(chunk.releaseAt() - System.nanoTime());
+                    if (chunk.data() == null) {
+                        break;
+                    }
+                    out.write(chunk.data());
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // Соединение закрыто с одной из сторон
+            }
+            closeQuietly(to);
+        }
+
+        private static void closeQuietly(Socket... sockets) {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Уже закрыт
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            synchronized (sockets) {
+                sockets.forEach(LatencyProxy::closeQuietly);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.quizbattle.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Запросы в секунду на картинки глав: прежняя отдача ClassPathResource на каждый запрос
+ * (контроллер {@link ClasspathChapterController} повторяет код до кеша ассетов)
+ * против текущего /api/chapters с кешем, ETag и версией в URL.
+ * Не входит в обычный прогон тестов (имя не подходит под шаблоны surefire), запуск:
+ * mvn test -Dtest=ChapterImageBenchmark [-Dbenchmark.threads=16 -Dbenchmark.seconds=10 -Dbenchmark.warmup-seconds=5]
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "quizbattle.journal.enabled=false",
+        "quizbattle.snapshots.enabled=false",
+        "quizbattle.warmup.enabled=false"
+})
+@Import(ChapterImageBenchmark.ClasspathChapterController.class)
+class ChapterImageBenchmark {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 10));
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("benchmark.warmup-seconds", 5));
+
+    // Самая крупная и самая мелкая картинки из resources/chapters
+    private static final List<String> FILES = List.of("2-1.jpg", "1-1.jpg");
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void chapterImageThroughput() throws Exception {
+        for (String file : FILES) {
+            double before = measure("before  " + file, request("/bench/classpath/chapters/" + file).build());
+
+            HttpResponse<Void> probe = client.send(request("/api/chapters/" + file).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            String etag = probe.headers().firstValue(HttpHeaders.ETAG).orElseThrow();
+            double after = measure("after   " + file, request("/api/chapters/" + file).build());
+            double revalidated = measure("304     " + file, request("/api/chapters/" + file)
+                    .header(HttpHeaders.IF_NONE_MATCH, etag)
+                    .build());
+
+            assertThat(before).isPositive();
+            assertThat(after).isPositive();
+            assertThat(revalidated).isPositive();
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+    }
+
+    /**
+     * Прогрев, затем THREADS потоков шлют запрос подряд в течение DURATION
+     * @return запросов в секунду; ответы не 200/304 считаются ошибкой
+     */
+    private double measure(String label, HttpRequest request) throws Exception {
+        run(request, WARMUP);
+        long started = System.nanoTime();
+        long completed = run(request, DURATION);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        double rps = completed / seconds;
+        System.out.printf("%s: %.0f req/s (%d requests, %d threads)%n", label, rps, completed, THREADS);
+        return rps;
+    }
+
+    private long run(HttpRequest request, Duration duration) throws Exception {
+        LongAdder completed = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(workers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        assertThat(response.statusCode()).isIn(200, 304);
+                        completed.increment();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return completed.sum();
+    }
+
+    /**
+     * Отдача картинки главы до кеша ассетов: новый ClassPathResource и чтение с classpath на каждый запрос
+     */
+    @TestConfiguration
+    @RestController
+    static class ClasspathChapterController {
+
+        @GetMapping("/bench/classpath/chapters/{filename:.+}")
+        public ResponseEntity<Resource> getChapterImage(@PathVariable String filename) {
+            Resource resource = new ClassPathResource("chapters/" + filename);
+            if (!resource.exists() || !resource.isReadable()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
+                    .body(resource);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.quizbattle.service;
+
+import com.quizbattle.dto.InvitationResponse;
+import com.quizbattle.dto.UserResponse;
+import com.quizbattle.model.entity.RoomEntity;
+import com.quizbattle.model.entity.RoomInvitation;
+import com.quizbattle.model.entity.Team;
+import com.quizbattle.model.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов на чтение приглашений и списка пользователей не зависит от числа строк:
+ * DTO заполняются проекциями, ленивые связи (room, hostUser, invitedUser, team) не загружаются.
+ * Работает с базой из application.properties, данные теста откатываются
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserService.class)
+class UserServiceStatementCountTest {
+
+    private static final int ROWS = 5;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User invitedUser;
+    private String roomCode;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+
+        Team team = new Team("test-team-" + suffix);
+        entityManager.persist(team);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User("test-" + suffix + "-" + i, "password", "Test User " + i, "test" + i, "");
+            user.setTeam(team);
+            entityManager.persist(user);
+            users.add(user);
+        }
+        invitedUser = users.get(0);
+
+        // Одна комната с приглашениями всех пользователей и по комнате на каждого хоста для invitedUser
+        for (int i = 0; i < ROWS; i++) {
+            RoomEntity room = new RoomEntity(suffix.substring(0, 6).toUpperCase() + i, users.get(i));
+            entityManager.persist(room);
+            if (i == 0) {
+                roomCode = room.getCode();
+                for (User user : users.subList(1, ROWS)) {
+                    entityManager.persist(new RoomInvitation(room, user));
+                }
+            } else {
+                entityManager.persist(new RoomInvitation(room, invitedUser));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void pendingInvitationsForUserUseSingleSelect() {
+        List<InvitationResponse> invitations = countStatements(2,
+                () -> userService.getPendingInvitationsForUser(invitedUser.getId(), null, 50));
+
+        assertThat(invitations).hasSize(ROWS - 1);
+        assertThat(invitations).allSatisfy(invitation -> {
+            assertThat(invitation.getRoomCode()).isNotNull();
+            assertThat(invitation.getInvitedUser().getId()).isEqualTo(invitedUser.getId());
+        });
+    }
+
+    @Test
+    void invitationsForRoomUseSingleSelect() {
+        List<InvitationResponse> invitations = countStatements(2,
+                () -> userService.getInvitationsForRoom(roomCode));
+
+        assertThat(invitations).hasSize(ROWS - 1);
+        assertThat(invitations).allSatisfy(invitation ->
+                assertThat(invitation.getInvitedUser().getUsername()).isNotNull());
+    }
+
+    @Test
+    void allUserResponsesUseSingleSelect() {
+        List<UserResponse> users = countStatements(1, () -> userService.getAllUserResponses());
+
+        assertThat(users).filteredOn(user -> user.getId().equals(invitedUser.getId()))
+                .singleElement()
+                .satisfies(user -> assertThat(user.getTeamId()).isNotNull());
+    }
+
+    @Test
+    void allUsersFetchTeamsInSameSelect() {
+        List<User> users = countStatements(1, () -> {
+            List<User> result = userService.getAllUsers();
+            result.forEach(user -> {
+                if (user.getTeam() != null) {
+                    user.getTeam().getName();
+                }
+            });
+            return result;
+        });
+
+        assertThat(users).extracting(User::getId).contains(invitedUser.getId());
+    }
+
+    /**
+     * Выполнить действие и проверить число подготовленных SQL-запросов
+     */
+    private <T> T countStatements(long expected, Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+        return result;
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect, useCallback } from 'react';
+import React, { useState, useEffect, useCallback, useRef } from 'react';
 import { useParams } from 'react-router-dom';
 import websocketService from '../services/websocket';
 import AvatarDisplay from '../components/AvatarDisplay';
@@ -14,6 +14,8 @@ function ScreenPage() {
   const [currentChapter, setCurrentChapter] = useState(null);
   const [currentPart, setCurrentPart] = useState(null);
   const [chapterNames, setChapterNames] = useState({});
+  // URL картинок частей с версией ("глава-часть" -> URL): такие URL браузер кеширует навсегда
+  const chapterImageUrls = useRef({});
 
   const handleMessage = useCallback((message) => {
     console.log('Screen received message:', message);
@@ -74,6 +76,9 @@ function ScreenPage() {
         }
         break;
       case 'CHAPTER_UPDATED':
+        if (message.imageUrl) {
+          chapterImageUrls.current[`${message.chapter}-${message.part}`] = message.imageUrl;
+        }
         if (message.chapter !== undefined) {
           setCurrentChapter(message.chapter);
         }
@@ -81,6 +86,13 @@ function ScreenPage() {
           setCurrentPart(message.part);
         }
         break;
+      case 'CHAPTER_PREFETCH':
+        // Загружаем картинку следующей части заранее, чтобы при переключении она уже была в кеше
+        if (message.imageUrl) {
+          chapterImageUrls.current[`${message.chapter}-${message.part}`] = message.imageUrl;
+          new Image().src = `${getApiUrl()}${message.imageUrl}`;
+        }
+        break;
       case 'ERROR':
         setError(message.error);
         setTimeout(() => setError(null), 5000);
@@ -142,12 +154,65 @@ function ScreenPage() {
       } catch (err) {
         console.error('Connection error:', err);
         setError('Не удалось подключиться к серверу');
+        pollState();
+      }
+    };
+
+    // Без WebSocket получаем изменения long-poll запросами: сервер отвечает при смене версии комнаты
+    let polling = true;
+    const pollState = async () => {
+      let version = -1;
+      while (polling) {
+        try {
+          const response = await fetch(`${getApiUrl()}/api/room/${roomCode}/state?since=${version}&wait=25000`);
+          if (response.status === 200) {
+            const data = await response.json();
+            version = data.version;
+            setConnected(true);
+            setError(null);
+            handleMessage(data);
+          } else if (response.status === 404) {
+            setError('Комната не найдена');
+            return;
+          } else if (response.status !== 304) {
+            await new Promise(resolve => setTimeout(resolve, 2000));
+          }
+        } catch (err) {
+          await new Promise(resolve => setTimeout(resolve, 2000));
+        }
       }
     };
 
-    connect();
+    // Экран только показывает события: подключаемся как зритель по SSE без STOMP-сессии,
+    // а если поток недоступен - через WebSocket
+    let eventSource = null;
+    const watch = () => {
+      if (!window.EventSource) {
+        connect();
+        return;
+      }
+      eventSource = new EventSource(`${getApiUrl()}/api/room/${roomCode}/events`);
+      eventSource.onopen = () => {
+        setConnected(true);
+        setError(null);
+      };
+      eventSource.onmessage = (event) => handleMessage(JSON.parse(event.data));
+      eventSource.onerror = () => {
+        // Временные обрывы EventSource переподключает сам; закрытый поток - ответ не 200
+        if (eventSource.readyState === EventSource.CLOSED) {
+          eventSource = null;
+          connect();
+        }
+      };
+    };
+
+    watch();
 
     return () => {
+      polling = false;
+      if (eventSource) {
+        eventSource.close();
+      }
       websocketService.unsubscribe(`/topic/room/${roomCode}`);
       // Не отключаем WebSocket полностью, так как он может использоваться другими компонентами
     };
@@ -184,6 +249,10 @@ function ScreenPage() {
     if (currentChapter !== null && currentPart !== null) {
       // Используем API URL для получения изображения из ресурсов бэкенда
       const apiUrl = getApiUrl();
+      const versionedUrl = chapterImageUrls.current[`${currentChapter}-${currentPart}`];
+      if (versionedUrl) {
+        return `${apiUrl}${versionedUrl}`;
+      }
       return `${apiUrl}/api/chapters/${currentChapter}-${currentPart}.jpg`;
     }
     return null;